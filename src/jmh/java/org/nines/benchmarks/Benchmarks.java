@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines.benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Runs the benchmarks, accepting JMH's command line options.
+ *
+ * <p>Unless profilers are given via <code>-prof</code>, the GC profiler is added, so
+ * allocation rates are reported along with throughput. Unless a result format is given via
+ * <code>-rf</code>, results are recorded as JSON in <code>jmh-results/</code>, named by the
+ * time of the run, so runs can be compared.</p>
+ *
+ * <pre>
+ * mvn -Pbenchmarks package
+ * java -jar target/benchmarks.jar RuleBenchmark -p subjects=10000
+ * java -jar target/benchmarks.jar DocumentBenchmark -p shape=pages
+ * </pre>
+ */
+public final class Benchmarks {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern(
+        "yyyyMMdd-HHmmss"
+    );
+
+    private Benchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList()
+            || commandLine.shouldListWithParams() || commandLine.shouldListProfilers()
+            || commandLine.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+        final ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!commandLine.getResultFormat().hasValue()) {
+            final Path results = Paths.get("jmh-results", String.format(
+                "%s.json", LocalDateTime.now().format(TIMESTAMP)
+            ));
+            Files.createDirectories(results.getParent());
+            options.resultFormat(ResultFormatType.JSON).result(results.toString());
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines.benchmarks;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdfxml.xmlinput.ARP;
+import org.nines.RdfXmlDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.ext.DefaultHandler2;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.TransformerException;
+
+/**
+ * Time per document of parsing, indexing and serializing RDF/XML.
+ *
+ * <p>Documents are generated by {@link SyntheticRecords} in two shapes: catalog records with
+ * many short properties and page records with a large text each. Besides the paths of
+ * {@link RdfXmlDocument}, the bare SAX and ARP parses performed by the XML and RDF syntax checks
+ * are measured as baselines.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DocumentBenchmark {
+
+    private static final SAXParserFactory SAX_PARSER_FACTORY = SAXParserFactory.newInstance();
+
+    static {
+        SAX_PARSER_FACTORY.setNamespaceAware(true);
+    }
+
+    @Param({ "catalog", "pages" })
+    public String shape;
+
+    @Param({ "100", "1000", "10000" })
+    public int records;
+
+    /**
+     * Properties per catalog record.
+     */
+    @Param({ "16" })
+    public int fanOut;
+
+    /**
+     * Characters of text per page record.
+     */
+    @Param({ "4096" })
+    public int textLength;
+
+    private byte[] rdf;
+    private Document document;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException, SAXException {
+        if ("pages".equals(shape)) {
+            rdf = SyntheticRecords.pages(records, textLength, 42);
+        } else {
+            rdf = SyntheticRecords.catalog(
+                records, fanOut, 0.1, SyntheticRecords.matchedValues(), 42
+            );
+        }
+        document = new RdfXmlDocument(new ByteArrayInputStream(rdf), SyntheticRecords.BASE)
+            .document;
+    }
+
+    /**
+     * Serializing removes whitespace from the DOM, so each invocation serializes a fresh copy.
+     */
+    @State(Scope.Thread)
+    public static class Unformatted {
+        RdfXmlDocument xml;
+
+        @Setup(Level.Invocation)
+        public void copy(DocumentBenchmark benchmark) {
+            xml = new RdfXmlDocument((Document) benchmark.document.cloneNode(true));
+        }
+    }
+
+    /**
+     * Parses the DOM and indexes its resources.
+     */
+    @Benchmark
+    public RdfXmlDocument parseDocument() throws IOException, SAXException {
+        return new RdfXmlDocument(new ByteArrayInputStream(rdf), SyntheticRecords.BASE);
+    }
+
+    /**
+     * Indexes the resources of a parsed DOM.
+     */
+    @Benchmark
+    public RdfXmlDocument indexResources() {
+        return new RdfXmlDocument(document);
+    }
+
+    /**
+     * Parses the RDF model into an in-memory graph.
+     */
+    @Benchmark
+    public Model parseModel() {
+        return RdfXmlDocument.model(new ByteArrayInputStream(rdf), SyntheticRecords.BASE);
+    }
+
+    /**
+     * Removes whitespace from the DOM and serializes it with indentation.
+     */
+    @Benchmark
+    public byte[] serialize(Unformatted unformatted) throws TransformerException {
+        return unformatted.xml.toByteArray();
+    }
+
+    /**
+     * Parses and serializes a document, as done when formatting sources.
+     */
+    @Benchmark
+    public byte[] format() throws IOException, SAXException, TransformerException {
+        return RdfXmlDocument.format(rdf, SyntheticRecords.BASE);
+    }
+
+    /**
+     * Parses the XML without building a DOM, as the XML syntax check does.
+     */
+    @Benchmark
+    public void parseSax() throws IOException, SAXException, ParserConfigurationException {
+        SAX_PARSER_FACTORY.newSAXParser()
+            .parse(new ByteArrayInputStream(rdf), new DefaultHandler2());
+    }
+
+    /**
+     * Parses the RDF without building a graph, as the RDF syntax check does.
+     */
+    @Benchmark
+    public void parseArp() throws IOException, SAXException {
+        final ARP arp = new ARP();
+        arp.getHandlers().setErrorHandler(new DefaultHandler2() {
+            @Override
+            public void fatalError(SAXParseException e) throws SAXException {
+                throw e;
+            }
+        });
+        arp.load(new ByteArrayInputStream(rdf), SyntheticRecords.BASE);
+    }
+}
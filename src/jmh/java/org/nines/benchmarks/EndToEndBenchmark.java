@@ -0,0 +1,187 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines.benchmarks;
+
+import au.com.bytecode.opencsv.CSVWriter;
+import org.eclipse.jgit.lib.Constants;
+import org.nines.Arc;
+import org.nines.Corpus;
+import org.nines.InProcessGit;
+import org.nines.Logging;
+import org.nines.Migration;
+import org.nines.RdfProject;
+import org.nines.Timings;
+import org.nines.Util;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Measures the throughput of the whole migration pipeline offline, against local stand-ins for
+ * ARC's GitLab service and git remotes.
+ *
+ * <p>A {@link Corpus synthetic corpus}, configured via <code>$ARC_CORPUS_*</code>, is generated
+ * as bare repositories below <code>$ARC_BENCHMARK_DIR</code>/ <code>-Darc.benchmark.dir</code>
+ * (default: <code>target/end-to-end</code>), once per corpus configuration. The repositories are
+ * listed by a {@link LocalGitLab local projects API}, to which {@link Arc} is pointed together
+ * with the URLs it clones from. {@link Migration#main(String[])} then clones, formats, migrates
+ * and commits all projects into a fresh workspace, in the mode configured via
+ * <code>$ARC_MIGRATION_MODE</code>, regardless of project size and ledger.</p>
+ *
+ * <p>The time and throughput of each {@link Timings.Stage stage}, summed over all threads, and
+ * of the pipeline as a whole are logged and recorded as CSV in <code>jmh-results/</code>, next
+ * to the results of the microbenchmarks. The workspace is removed afterwards, unless
+ * <code>$ARC_BENCHMARK_KEEP=true</code>/ <code>-Darc.benchmark.keep=true</code>.</p>
+ *
+ * <pre>
+ * mvn -Pbenchmarks package
+ * ARC_CORPUS_SIZE=1G java -cp target/benchmarks.jar org.nines.benchmarks.EndToEndBenchmark
+ * </pre>
+ */
+public final class EndToEndBenchmark {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern(
+        "yyyyMMdd-HHmmss"
+    );
+
+    private static final String[] CSV_HEADER = Stream.concat(
+        Arrays.stream(Timings.CSV_HEADER), Stream.of("Corpus MB/s")
+    ).toArray(String[]::new);
+
+    private static final String PIPELINE = "PIPELINE";
+
+    private EndToEndBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Logging.configure();
+        final Logger log = Logging.forClass(EndToEndBenchmark.class);
+
+        final Path directory = Paths.get(
+            Util.config("ARC_BENCHMARK_DIR", "arc.benchmark.dir").orElse("target/end-to-end")
+        ).toAbsolutePath();
+        final Corpus corpus = Corpus.configured();
+        final File namespace = directory
+            .resolve(String.format("corpus-%08x", corpus.toString().hashCode()))
+            .resolve("arc")
+            .toFile();
+        if (namespace.isDirectory()) {
+            log.info(() -> String.format("Reusing %s in %s", corpus, namespace));
+        } else {
+            log.info(() -> String.format("Generating %s in %s", corpus, namespace));
+            corpus.write(namespace, true);
+        }
+
+        final Path workspace = Files.createTempDirectory(
+            Files.createDirectories(directory), "workspace-"
+        );
+        try (LocalGitLab gitLab = new LocalGitLab(namespace)) {
+            System.setProperty("gitlab.private.token", "end-to-end");
+            System.setProperty("arc.gitlab.api", gitLab.apiUrl().toString());
+            System.setProperty("arc.git.url", gitLab.gitUrl());
+            System.setProperty("arc.rdf.workspace", workspace.toString());
+            System.setProperty("arc.migration.min.project.size", "0");
+            System.setProperty("arc.migration.force", "true");
+            final long corpusBytes = corpusBytes(namespace, gitLab);
+
+            final long start = System.nanoTime();
+            Migration.main(args);
+            final long elapsed = System.nanoTime() - start;
+
+            final List<String[]> rows = report(corpusBytes, gitLab.projects().size(), elapsed);
+            final Path results = Paths.get("jmh-results", String.format(
+                "end-to-end-%s.csv", LocalDateTime.now().format(TIMESTAMP)
+            ));
+            Files.createDirectories(results.getParent());
+            try (CSVWriter csv = new CSVWriter(Files.newBufferedWriter(
+                results, StandardCharsets.UTF_8
+            ))) {
+                csv.writeNext(CSV_HEADER);
+                rows.forEach(csv::writeNext);
+            }
+            log.info(() -> String.format("! %d byte(s) in %s, see %s\n%s",
+                corpusBytes, Duration.ofNanos(elapsed), results, table(rows)));
+        } finally {
+            if (!Util.config("ARC_BENCHMARK_KEEP", "arc.benchmark.keep")
+                .map(Boolean::parseBoolean).orElse(false)) {
+                Util.deleteRecursively(workspace);
+            }
+        }
+    }
+
+    private static long corpusBytes(File namespace, LocalGitLab gitLab) {
+        return gitLab.projects().stream()
+            .mapToLong(project -> new InProcessGit(
+                project, new File(namespace, project.name + Constants.DOT_GIT_EXT)
+            ).blobSize("master", RdfProject::isRdfFile))
+            .sum();
+    }
+
+    /**
+     * Reports the overall timings per stage, with the corpus' throughput per stage, followed by
+     * the wall-clock time and throughput of the pipeline.
+     */
+    private static List<String[]> report(long corpusBytes, int projects, long elapsedNanos) {
+        final List<String[]> rows = Timings.report()
+            .filter(row -> "(all)".equals(row[0]))
+            .map(row -> {
+                final String[] extended = Arrays.copyOf(row, CSV_HEADER.length);
+                extended[CSV_HEADER.length - 1] = throughput(
+                    corpusBytes, (long) (Double.parseDouble(row[9]) * 1e6)
+                );
+                return extended;
+            })
+            .collect(Collectors.toCollection(ArrayList::new));
+
+        final String[] pipeline = new String[CSV_HEADER.length];
+        Arrays.fill(pipeline, "");
+        pipeline[0] = "(all)";
+        pipeline[1] = PIPELINE;
+        pipeline[2] = Integer.toString(projects);
+        pipeline[9] = String.format(Locale.ROOT, "%.1f", elapsedNanos / 1e6);
+        pipeline[10] = Long.toString(corpusBytes);
+        pipeline[11] = throughput(corpusBytes, elapsedNanos);
+        pipeline[12] = pipeline[11];
+        rows.add(pipeline);
+        return rows;
+    }
+
+    private static String throughput(long bytes, long nanos) {
+        return bytes == 0 || nanos == 0
+            ? ""
+            : String.format(Locale.ROOT, "%.2f", bytes / 1e6 / (nanos / 1e9));
+    }
+
+    private static String table(List<String[]> rows) {
+        return rows.stream()
+            .map(row -> String.format("%-10s %12s ms %14s byte(s) %10s MB/s %10s corpus MB/s",
+                row[1], row[9], row[10], row[11], row[12]))
+            .collect(Collectors.joining("\n"));
+    }
+}
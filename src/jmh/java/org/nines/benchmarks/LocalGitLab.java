@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines.benchmarks;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.HttpUrl;
+import org.eclipse.jgit.lib.Constants;
+import org.nines.Arc;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A stand-in for the projects API of ARC's GitLab service, listing local bare repositories.
+ *
+ * <p>Each repository <code>&lt;name&gt;.git</code> in the given directory is listed as project
+ * <code>&lt;name&gt;</code> in the namespace named after the directory, paginated like GitLab
+ * does. Requests without a <code>PRIVATE-TOKEN</code> header are rejected. Point {@link Arc}
+ * at {@link #apiUrl()} and cloning at {@link #gitUrl()} via their configuration.</p>
+ */
+final class LocalGitLab implements Closeable {
+
+    private final File namespace;
+    private final List<Arc.GitLabProject> projects;
+    private final JsonAdapter<List<Arc.GitLabProject>> jsonAdapter = new Moshi.Builder().build()
+        .adapter(Types.newParameterizedType(List.class, Arc.GitLabProject.class));
+    private final HttpServer server;
+
+    /**
+     * Starts serving on an ephemeral port of the loopback interface.
+     *
+     * @param namespace the directory containing the bare repositories
+     */
+    LocalGitLab(File namespace) throws IOException {
+        this.namespace = namespace.getAbsoluteFile();
+        this.projects = Optional.ofNullable(this.namespace.listFiles(File::isDirectory))
+            .map(Stream::of).orElseGet(Stream::empty)
+            .map(File::getName)
+            .filter(name -> name.endsWith(Constants.DOT_GIT_EXT))
+            .map(name -> name.substring(0, name.length() - Constants.DOT_GIT_EXT.length()))
+            .map(name -> new Arc.GitLabProject(
+                String.join("/", this.namespace.getName(), name), name
+            ))
+            .sorted(Comparator.comparing(project -> project.path))
+            .collect(Collectors.toList());
+
+        this.server = HttpServer.create(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0
+        );
+        server.createContext("/api/v3/projects", exchange -> {
+            try {
+                respond(exchange);
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * The base URL of the API, for <code>$ARC_GITLAB_API</code>.
+     */
+    HttpUrl apiUrl() {
+        return new HttpUrl.Builder()
+            .scheme("http").host(server.getAddress().getHostString())
+            .port(server.getAddress().getPort())
+            .addEncodedPathSegments("api/v3/").build();
+    }
+
+    /**
+     * The format of clone URLs, for <code>$ARC_GIT_URL</code>.
+     */
+    String gitUrl() {
+        return String.format("file://%s/%%s%s",
+            namespace.getParentFile().toURI().getPath().replaceAll("/$", ""),
+            Constants.DOT_GIT_EXT);
+    }
+
+    /**
+     * The listed projects.
+     */
+    List<Arc.GitLabProject> projects() {
+        return projects;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestHeaders().getFirst("PRIVATE-TOKEN") == null) {
+            exchange.sendResponseHeaders(401, -1);
+            return;
+        }
+        final HttpUrl url = HttpUrl.parse("http://localhost" + exchange.getRequestURI());
+        final int perPage = Math.max(1, Math.min(100, parameter(url, "per_page", 20)));
+        final int page = Math.max(1, parameter(url, "page", 1));
+        final int totalPages = Math.max(1, (projects.size() + perPage - 1) / perPage);
+        final List<Arc.GitLabProject> slice = projects.subList(
+            Math.min(projects.size(), (page - 1) * perPage),
+            Math.min(projects.size(), page * perPage)
+        );
+
+        final byte[] body = jsonAdapter.toJson(slice).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.getResponseHeaders().set("X-Page", Integer.toString(page));
+        exchange.getResponseHeaders().set("X-Per-Page", Integer.toString(perPage));
+        exchange.getResponseHeaders().set("X-Total", Integer.toString(projects.size()));
+        exchange.getResponseHeaders().set("X-Total-Pages", Integer.toString(totalPages));
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static int parameter(HttpUrl url, String name, int defaultValue) {
+        try {
+            return Optional.ofNullable(url.queryParameter(name))
+                .map(Integer::parseInt)
+                .orElse(defaultValue);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines.benchmarks;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.nines.Migration;
+import org.nines.PropertyValue;
+import org.nines.RdfXmlDocument;
+import org.nines.Rule;
+import org.nines.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Throughput of the rule engine on synthetic records, in passes over all subjects of a
+ * document per second.
+ *
+ * <p>The rules of <code>modnets-refactoring.xml</code> are applied to documents with a
+ * configurable number of subjects, properties per subject and share of subjects matched by a
+ * rule, as generated by {@link SyntheticRecords}. Run with the GC profiler to relate
+ * throughput to allocation rate, see {@link Benchmarks}.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RuleBenchmark {
+
+    @Param({ "1000" })
+    public int subjects;
+
+    @Param({ "8", "32" })
+    public int fanOut;
+
+    @Param({ "0.0", "0.1", "0.5" })
+    public double hitRatio;
+
+    private Migration migration;
+    private Rule[] rules;
+    private PropertyValue[] added;
+    private byte[] rdf;
+
+    private Model model;
+    private RdfXmlDocument xml;
+    private Resource[] resources;
+
+    private Model migratedModel;
+    private RdfXmlDocument migratedXml;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException, SAXException {
+        migration = SyntheticRecords.migration();
+        rules = SyntheticRecords.rules();
+        added = Stream.of(rules)
+            .flatMap(rule -> Stream.of(rule.addedProperties))
+            .filter(value -> !Schema.SINGLETON_PROPERTIES.contains(value.property))
+            .toArray(PropertyValue[]::new);
+        final List<PropertyValue> hits = SyntheticRecords.matchedValues();
+        rdf = SyntheticRecords.catalog(subjects, fanOut, hitRatio, hits, 42);
+
+        model = model();
+        xml = document();
+        resources = model.listSubjects().toList().toArray(new Resource[0]);
+    }
+
+    /**
+     * Rules modify the records, so each invocation migrates freshly parsed ones. The GC
+     * profiler attributes the allocations of parsing to {@link #migrate()}; compare with
+     * {@link #evaluateFilters(Blackhole)} for the rule engine's own share.
+     */
+    @Setup(Level.Invocation)
+    public void parse() throws IOException, SAXException {
+        migratedModel = model();
+        migratedXml = document();
+    }
+
+    /**
+     * Applies all rules to all subjects, modifying model and DOM where rules match.
+     */
+    @Benchmark
+    public boolean migrate() {
+        return migration.apply(migratedModel, migratedXml);
+    }
+
+    /**
+     * Evaluates the subject filters of all rules against all subjects.
+     */
+    @Benchmark
+    public void evaluateFilters(Blackhole blackhole) {
+        for (Resource resource : resources) {
+            for (Rule rule : rules) {
+                blackhole.consume(rule.subjectFilter.appliesTo(resource));
+            }
+        }
+    }
+
+    /**
+     * Adds property values assigned by rules to all subjects and removes them again.
+     */
+    @Benchmark
+    public void addAndRemoveProperties(Blackhole blackhole) {
+        for (int ri = 0; ri < resources.length; ri++) {
+            final PropertyValue value = added[ri % added.length];
+            if (value.addTo(resources[ri], xml)) {
+                blackhole.consume(value.removeFrom(resources[ri], xml));
+            }
+        }
+    }
+
+    private Model model() {
+        return RdfXmlDocument.model(new ByteArrayInputStream(rdf), SyntheticRecords.BASE);
+    }
+
+    private RdfXmlDocument document() throws IOException, SAXException {
+        return new RdfXmlDocument(new ByteArrayInputStream(rdf), SyntheticRecords.BASE);
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines.benchmarks;
+
+import net.middell.XML;
+import org.apache.jena.vocabulary.DC;
+import org.apache.jena.vocabulary.RDF;
+import org.nines.Collex;
+import org.nines.Corpus;
+import org.nines.LocRelators;
+import org.nines.Migration;
+import org.nines.PropertyValue;
+import org.nines.Rule;
+import org.nines.Schema;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static net.middell.XML.children;
+import static net.middell.XML.elements;
+
+/**
+ * Synthetic RDF/XML records in the shape of ARC's catalog, for benchmarking.
+ *
+ * <p>Each catalog subject carries a fixed number of properties drawn from the schema's
+ * vocabularies. A given share of subjects additionally carries a property value matched by one
+ * of the migration rules, so the rules' hit ratio can be controlled. Page records instead carry
+ * little more than a large text.</p>
+ */
+final class SyntheticRecords {
+
+    static final String BASE = "http://example.org/arc/";
+
+    private SyntheticRecords() {
+    }
+
+    /**
+     * Parses the rules of the migration shipped with this tool.
+     */
+    static Rule[] rules() throws IOException {
+        final List<Rule> rules = new ArrayList<>();
+        for (Element rule : elements(children(rulesDocument().getDocumentElement()))) {
+            if (Migration.isMigrationElement(rule, "rule")) {
+                rules.add(Rule.parse(rule));
+            }
+        }
+        return rules.toArray(new Rule[rules.size()]);
+    }
+
+    /**
+     * The migration shipped with this tool.
+     */
+    static Migration migration() throws IOException {
+        return Migration.parse(rulesDocument());
+    }
+
+    /**
+     * Collects the property values matched by the subject filters of the shipped rules.
+     */
+    static List<PropertyValue> matchedValues() throws IOException {
+        return Corpus.ruleValues();
+    }
+
+    /**
+     * Generates a catalog document.
+     *
+     * @param subjects the number of subjects
+     * @param fanOut the number of properties per subject
+     * @param hitRatio the share of subjects carrying one of the <code>hits</code>
+     * @param hits property values matched by migration rules
+     * @param seed the seed of the random choice of values
+     * @return the RDF/XML document, encoded in UTF-8
+     */
+    static byte[] catalog(int subjects, int fanOut, double hitRatio, List<PropertyValue> hits,
+                          long seed) {
+        final Random random = new Random(seed);
+        final Map<String, String> prefixes = new LinkedHashMap<>();
+        prefixes.put(RDF.uri, "rdf");
+        prefixes.put(Collex.uri, "collex");
+        prefixes.put(DC.NS, "dc");
+        prefixes.put(LocRelators.uri, "role");
+        for (PropertyValue hit : hits) {
+            prefixes.computeIfAbsent(hit.namespaceUri, ns -> "ns" + prefixes.size());
+        }
+
+        final String[] types = Schema.VALID_TYPES.stream().sorted().toArray(String[]::new);
+        final String[] genres = Schema.VALID_GENRES.stream().sorted().toArray(String[]::new);
+        final String[] disciplines = Schema.VALID_DISCIPLINES.stream().sorted()
+            .toArray(String[]::new);
+
+        final StringBuilder rdf = new StringBuilder(subjects * fanOut * 64);
+        rdf.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<rdf:RDF");
+        for (Map.Entry<String, String> prefix : prefixes.entrySet()) {
+            rdf.append(" xmlns:").append(prefix.getValue()).append("=\"")
+                .append(prefix.getKey()).append('"');
+        }
+        rdf.append(">\n");
+        for (int si = 0; si < subjects; si++) {
+            rdf.append("  <collex:record rdf:about=\"").append(BASE).append(si).append("\">\n");
+            for (int pi = 0; pi < fanOut; pi++) {
+                switch (pi % 8) {
+                    case 0:
+                        property(rdf, "collex", "archive", "synthetic");
+                        break;
+                    case 1:
+                        property(rdf, "dc", "title", "Title " + si + "." + pi);
+                        break;
+                    case 2:
+                        property(rdf, "dc", "date", Integer.toString(1700 + random.nextInt(300)));
+                        break;
+                    case 3:
+                        property(rdf, "dc", "type", types[random.nextInt(types.length)]);
+                        break;
+                    case 4:
+                        property(rdf, "collex", "genre", genres[random.nextInt(genres.length)]);
+                        break;
+                    case 5:
+                        property(rdf, "collex", "discipline",
+                            disciplines[random.nextInt(disciplines.length)]);
+                        break;
+                    case 6:
+                        property(rdf, "role", "AUT", "Author " + random.nextInt(1000));
+                        break;
+                    default:
+                        property(rdf, "collex", "freeculture",
+                            Boolean.toString(random.nextBoolean()));
+                        break;
+                }
+            }
+            if (!hits.isEmpty() && random.nextDouble() < hitRatio) {
+                final PropertyValue hit = hits.get(random.nextInt(hits.size()));
+                property(rdf, prefixes.get(hit.namespaceUri), hit.localName, hit.value);
+            }
+            rdf.append("  </collex:record>\n");
+        }
+        rdf.append("</rdf:RDF>\n");
+        return rdf.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Generates a document of page records, each with a large text.
+     *
+     * @param pages the number of pages
+     * @param textLength the length of each page's text in characters
+     * @param seed the seed of the random text
+     * @return the RDF/XML document, encoded in UTF-8
+     */
+    static byte[] pages(int pages, int textLength, long seed) {
+        final Random random = new Random(seed);
+        final StringBuilder rdf = new StringBuilder(pages * (textLength + 256));
+        rdf.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<rdf:RDF")
+            .append(" xmlns:rdf=\"").append(RDF.uri).append('"')
+            .append(" xmlns:collex=\"").append(Collex.uri).append("\">\n");
+        final StringBuilder text = new StringBuilder(textLength);
+        for (int pi = 0; pi < pages; pi++) {
+            rdf.append("  <collex:page rdf:about=\"").append(BASE).append("page/").append(pi)
+                .append("\">\n");
+            rdf.append("    <collex:pageof rdf:resource=\"").append(BASE).append(pi / 100)
+                .append("\"/>\n");
+            property(rdf, "collex", "pagenum", Integer.toString(pi % 100 + 1));
+            text.setLength(0);
+            while (text.length() < textLength) {
+                final int word = 1 + random.nextInt(10);
+                for (int ci = 0; ci < word; ci++) {
+                    text.append((char) ('a' + random.nextInt(26)));
+                }
+                text.append(random.nextInt(12) == 0 ? '\n' : ' ');
+            }
+            property(rdf, "collex", "text", text.toString());
+            rdf.append("  </collex:page>\n");
+        }
+        rdf.append("</rdf:RDF>\n");
+        return rdf.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void property(StringBuilder rdf, String prefix, String localName,
+                                 String value) {
+        rdf.append("    <").append(prefix).append(':').append(localName).append('>');
+        for (int ci = 0; ci < value.length(); ci++) {
+            final char c = value.charAt(ci);
+            if (c == '<') {
+                rdf.append("&lt;");
+            } else if (c == '&') {
+                rdf.append("&amp;");
+            } else {
+                rdf.append(c);
+            }
+        }
+        rdf.append("</").append(prefix).append(':').append(localName).append(">\n");
+    }
+
+    private static Document rulesDocument() throws IOException {
+        try (InputStream rules = Migration.class.getResourceAsStream(Migration.RULES_RESOURCE)) {
+            return XML.newDocumentBuilder().parse(rules);
+        } catch (SAXException e) {
+            throw new IOException(e);
+        }
+    }
+}
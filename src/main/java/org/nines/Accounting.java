@@ -0,0 +1,315 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import au.com.bytecode.opencsv.CSVWriter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Optional accounting of the memory allocated and CPU time consumed per file.
+ *
+ * <p>With <code>$ARC_ACCOUNTING=true</code>/ <code>-Darc.accounting=true</code>, the bytes
+ * allocated and the CPU time spent by the processing thread are read from the JVM's
+ * {@link java.lang.management.ThreadMXBean} around each phase of processing a file. Totals are
+ * kept per project and phase, together with the
+ * <code>$ARC_ACCOUNTING_TOP</code>/ <code>-Darc.accounting.top</code> (default: 10) files per
+ * project which allocated most. Otherwise, accounting is a no-op.</p>
+ *
+ * <p>Files are attributed to the project given when they are
+ * {@link #file(String, String, long) opened}. The accounts are written as CSV via
+ * {@link #writeReport(Logger)}.</p>
+ */
+public final class Accounting {
+
+    private static final Logger LOG = Logging.forClass(Accounting.class);
+
+    public static final String[] CSV_HEADER = {
+        "Project", "File", "Bytes", "Allocated", "Allocated/Byte", "CPU (ms)",
+        "Parse (alloc.)", "Migrate (alloc.)", "Write (alloc.)", "Validate (alloc.)",
+        "Parse (CPU ms)", "Migrate (CPU ms)", "Write (CPU ms)", "Validate (CPU ms)"
+    };
+
+    /**
+     * The phases of processing a file.
+     */
+    public enum Phase {
+        PARSE, MIGRATE, WRITE, VALIDATE
+    }
+
+    private static final int PHASES = Phase.values().length;
+
+    private static final String UNKNOWN_PROJECT = "(unknown)";
+
+    private static final String TOTAL = "(total)";
+
+    private static final java.lang.management.ThreadMXBean THREADS =
+        ManagementFactory.getThreadMXBean();
+
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocations();
+
+    private static final boolean ENABLED = Util.config("ARC_ACCOUNTING", "arc.accounting")
+        .map(Boolean::parseBoolean)
+        .orElse(false) && enable();
+
+    private static final int TOP = Util.config("ARC_ACCOUNTING_TOP", "arc.accounting.top")
+        .map(Integer::parseInt)
+        .orElse(10);
+
+    private static final Map<String, Project> projects = new ConcurrentSkipListMap<>();
+
+    private static final FileAccount NONE = new FileAccount(null, null, 0);
+
+    private Accounting() {
+    }
+
+    /**
+     * Whether accounting is enabled.
+     */
+    public static boolean enabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Opens the account of a file processed on the current thread.
+     *
+     * @param project the name of the project containing the file, <code>null</code> if unknown
+     * @param path the path of the file
+     * @param bytes the size of the file
+     * @return the account, to be {@link FileAccount#close() closed} after processing the file;
+     *     a no-op if accounting is disabled
+     */
+    public static FileAccount file(String project, String path, long bytes) {
+        return ENABLED ? new FileAccount(project, path, bytes) : NONE;
+    }
+
+    /**
+     * Reports the accounts.
+     *
+     * @return rows matching {@link #CSV_HEADER}: per project, a total row followed by the most
+     *     expensive files, in descending order of allocated bytes
+     */
+    public static Stream<String[]> report() {
+        final List<String[]> rows = new ArrayList<>();
+        final Usage overall = new Usage(TOTAL, 0);
+        for (Map.Entry<String, Project> project : projects.entrySet()) {
+            final Usage total = project.getValue().total;
+            overall.add(total);
+            rows.add(total.row(project.getKey()));
+            for (Usage file : project.getValue().top()) {
+                rows.add(file.row(project.getKey()));
+            }
+        }
+        rows.add(0, overall.row(TOTAL));
+        return rows.stream();
+    }
+
+    /**
+     * Summarizes the overall accounts.
+     */
+    public static String summary() {
+        final String[] total = report().findFirst().orElseThrow(IllegalStateException::new);
+        return String.format(
+            "%s byte(s) read, %s byte(s) allocated (%s per byte read), %s ms CPU time",
+            total[2], total[3], total[4], total[5]
+        );
+    }
+
+    /**
+     * Writes the {@link #report() accounts} to the CSV file
+     * <code>$ARC_ACCOUNTING_REPORT</code>/ <code>-Darc.accounting.report</code> (default:
+     * <code>arc-accounting.csv</code>), logging their {@link #summary() summary}.
+     *
+     * @param log the log receiving the summary
+     */
+    public static void writeReport(Logger log) throws IOException {
+        final String path = Util.config("ARC_ACCOUNTING_REPORT", "arc.accounting.report")
+            .orElse("arc-accounting.csv");
+        try (CSVWriter csv = new CSVWriter(Files.newBufferedWriter(
+            Paths.get(path), StandardCharsets.UTF_8
+        ))) {
+            csv.writeNext(CSV_HEADER);
+            report().forEach(csv::writeNext);
+        }
+        log.info(() -> String.format("! %s, see %s", summary(), path));
+    }
+
+    private static boolean enable() {
+        try {
+            if (THREADS.isThreadCpuTimeSupported()) {
+                THREADS.setThreadCpuTimeEnabled(true);
+            }
+            if (ALLOCATIONS != null && ALLOCATIONS.isThreadAllocatedMemorySupported()) {
+                ALLOCATIONS.setThreadAllocatedMemoryEnabled(true);
+            }
+        } catch (UnsupportedOperationException | SecurityException e) {
+            LOG.warning(e::toString);
+        }
+        return true;
+    }
+
+    private static com.sun.management.ThreadMXBean allocations() {
+        return THREADS instanceof com.sun.management.ThreadMXBean
+            ? (com.sun.management.ThreadMXBean) THREADS
+            : null;
+    }
+
+    private static long threadAllocated() {
+        return ALLOCATIONS == null
+            ? 0
+            : Math.max(0, ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId()));
+    }
+
+    private static long threadCpuTime() {
+        return Math.max(0, THREADS.getCurrentThreadCpuTime());
+    }
+
+    /**
+     * The account of a file, measuring phases on the thread processing it.
+     */
+    public static class FileAccount implements AutoCloseable {
+
+        private final Usage usage;
+        private final String project;
+        private long allocatedStart;
+        private long cpuStart;
+
+        private FileAccount(String project, String path, long bytes) {
+            this.usage = path == null ? null : new Usage(path, bytes);
+            this.project = project == null ? UNKNOWN_PROJECT : project;
+        }
+
+        /**
+         * Starts measuring a phase.
+         */
+        public void begin() {
+            if (usage != null) {
+                allocatedStart = threadAllocated();
+                cpuStart = threadCpuTime();
+            }
+        }
+
+        /**
+         * Ends measuring a phase started via {@link #begin()}.
+         */
+        public void end(Phase phase) {
+            if (usage != null) {
+                usage.allocated[phase.ordinal()] += threadAllocated() - allocatedStart;
+                usage.cpu[phase.ordinal()] += threadCpuTime() - cpuStart;
+            }
+        }
+
+        /**
+         * Adds this account to its project.
+         */
+        @Override
+        public void close() {
+            if (usage != null) {
+                projects.computeIfAbsent(project, p -> new Project()).add(usage);
+            }
+        }
+    }
+
+    private static class Project {
+        final Usage total = new Usage(TOTAL, 0);
+        final PriorityQueue<Usage> top = new PriorityQueue<>(
+            Comparator.comparingLong(Usage::allocated)
+        );
+
+        synchronized void add(Usage file) {
+            total.add(file);
+            top.add(file);
+            if (top.size() > TOP) {
+                top.poll();
+            }
+        }
+
+        synchronized List<Usage> top() {
+            final List<Usage> files = new ArrayList<>(top);
+            files.sort(Comparator.comparingLong(Usage::allocated).reversed());
+            return files;
+        }
+    }
+
+    private static class Usage {
+        final String path;
+        long bytes;
+        final long[] allocated = new long[PHASES];
+        final long[] cpu = new long[PHASES];
+
+        Usage(String path, long bytes) {
+            this.path = path;
+            this.bytes = bytes;
+        }
+
+        synchronized long allocated() {
+            long sum = 0;
+            for (long phase : allocated) {
+                sum += phase;
+            }
+            return sum;
+        }
+
+        synchronized long cpu() {
+            long sum = 0;
+            for (long phase : cpu) {
+                sum += phase;
+            }
+            return sum;
+        }
+
+        synchronized void add(Usage other) {
+            bytes += other.bytes;
+            for (int pi = 0; pi < PHASES; pi++) {
+                allocated[pi] += other.allocated[pi];
+                cpu[pi] += other.cpu[pi];
+            }
+        }
+
+        synchronized String[] row(String project) {
+            final long read = bytes;
+            final List<String> row = new ArrayList<>();
+            row.add(project);
+            row.add(path);
+            row.add(Long.toString(read));
+            row.add(Long.toString(allocated()));
+            row.add(read == 0
+                ? ""
+                : String.format(Locale.ROOT, "%.1f", (double) allocated() / read));
+            row.add(Long.toString(cpu() / 1000000));
+            for (long phase : allocated) {
+                row.add(Long.toString(phase));
+            }
+            for (long phase : cpu) {
+                row.add(Long.toString(phase / 1000000));
+            }
+            return row.toArray(new String[row.size()]);
+        }
+    }
+}
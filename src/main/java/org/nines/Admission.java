@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Admission control of files into in-memory processing, bounding the heap they occupy at once.
+ *
+ * <p>Parsing a file into a DOM and an RDF model retains a multiple of its size on the heap.
+ * Before a file is parsed, that peak is estimated as its size times
+ * <code>$ARC_HEAP_MULTIPLIER</code>/ <code>-Darc.heap.multiplier</code> (default: 16) and
+ * reserved against a budget of <code>$ARC_HEAP_BUDGET</code>/ <code>-Darc.heap.budget</code>
+ * bytes, with an optional unit <code>K</code>, <code>M</code> or <code>G</code> (default: 60%
+ * of the maximum heap size). The default multiplier has been calibrated on catalog records,
+ * which retain about 14 times their size in DOM and model after parsing, compared to about 3
+ * times for page records with large texts. It also covers validation, which streams a file but
+ * keeps {@link StreamingSchemaValidator the state of each subject} until the file's end, a
+ * small fraction of the model.</p>
+ *
+ * <p>Threads wait until their reservation fits into the budget, in the order of their requests,
+ * so small files are processed with full parallelism while large ones run with less concurrency.
+ * A file exceeding the whole budget is admitted once no other is in process. With
+ * <code>$ARC_HEAP_BUDGET=0</code>, admission control is disabled.</p>
+ */
+public final class Admission {
+
+    private static final Logger LOG = Logging.forClass(Admission.class);
+
+    private static final Admission HEAP = new Admission(
+        Util.config("ARC_HEAP_BUDGET", "arc.heap.budget")
+            .map(Util::bytes)
+            .orElse((long) (Runtime.getRuntime().maxMemory() * 0.6)),
+        Util.config("ARC_HEAP_MULTIPLIER", "arc.heap.multiplier")
+            .map(Double::parseDouble)
+            .orElse(16.0)
+    );
+
+    private static final Permit NONE = new Permit(null, 0);
+
+    private static final Metrics.Counter WAITS = Metrics.counter(
+        "arc_admission_waits_total", "Files which waited for heap to be released"
+    );
+
+    static {
+        Metrics.gauge("arc_heap_reserved_bytes", "Heap reserved by files in process",
+            Admission::reserved);
+        Metrics.gauge("arc_heap_budget_bytes", "Heap budget of files in process",
+            () -> HEAP.budget);
+    }
+
+    private final long budget;
+    private final double multiplier;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    private long reserved = 0;
+    private long nextTicket = 0;
+    private long servedTicket = 0;
+
+    Admission(long budget, double multiplier) {
+        this.budget = budget;
+        this.multiplier = multiplier;
+    }
+
+    /**
+     * Reserves heap for processing a file, waiting until the reservation fits into the budget.
+     *
+     * @param size the size of the file in bytes
+     * @return the reservation, to be {@link Permit#close() released} after processing the file
+     */
+    public static Permit admit(long size) {
+        return HEAP.acquire(size);
+    }
+
+    /**
+     * The heap currently reserved, in bytes.
+     */
+    public static long reserved() {
+        return HEAP.reservedBytes();
+    }
+
+    Permit acquire(long size) {
+        if (budget <= 0) {
+            return NONE;
+        }
+        final long estimate = (long) Math.min(Long.MAX_VALUE / 2, size * multiplier);
+        lock.lock();
+        try {
+            final long ticket = nextTicket++;
+            boolean waited = false;
+            while (ticket != servedTicket || !fits(estimate)) {
+                waited = true;
+                released.awaitUninterruptibly();
+            }
+            if (waited) {
+                WAITS.inc();
+            }
+            servedTicket++;
+            reserved += estimate;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (estimate > budget) {
+            LOG.fine(() -> String.format(
+                "~ %d byte(s) estimated to exceed the heap budget of %d byte(s)", size, budget
+            ));
+        }
+        return new Permit(this, estimate);
+    }
+
+    long reservedBytes() {
+        lock.lock();
+        try {
+            return reserved;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of requests waiting for admission.
+     */
+    long queued() {
+        lock.lock();
+        try {
+            return nextTicket - servedTicket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean fits(long estimate) {
+        return reserved == 0 || reserved + estimate <= budget;
+    }
+
+    private void release(long estimate) {
+        lock.lock();
+        try {
+            reserved -= estimate;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A reservation of heap.
+     */
+    public static class Permit implements AutoCloseable {
+
+        private final Admission admission;
+        private long estimate;
+
+        private Permit(Admission admission, long estimate) {
+            this.admission = admission;
+            this.estimate = estimate;
+        }
+
+        /**
+         * Releases the reservation; subsequent calls have no effect.
+         */
+        @Override
+        public void close() {
+            if (estimate == 0) {
+                return;
+            }
+            admission.release(estimate);
+            estimate = 0;
+        }
+    }
+}
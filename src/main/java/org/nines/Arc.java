@@ -17,20 +17,30 @@ package org.nines;
 
 import com.squareup.moshi.Json;
 import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonReader;
 import com.squareup.moshi.Moshi;
-import com.squareup.moshi.Types;
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 import okhttp3.logging.HttpLoggingInterceptor;
+import org.nines.events.GitLabPageEvent;
 
+import java.io.File;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,7 +49,16 @@ import static okhttp3.logging.HttpLoggingInterceptor.Level.BODY;
 /**
  * Access to the infrastructure of the Advanced Research Consortium (ARC).
  *
- * <p>ARC's GitLab service can be queried via its API.</p>
+ * <p>ARC's GitLab service can be queried via its API. Result pages are fetched concurrently and,
+ * if a cache directory is configured via <code>$ARC_GITLAB_CACHE</code>/
+ * <code>-Darc.gitlab.cache</code>, kept on disk for <code>$ARC_GITLAB_CACHE_TTL</code>/
+ * <code>-Darc.gitlab.cache.ttl</code> seconds (default: 12 hours). Within that time, no API
+ * requests are made; afterwards cached pages are revalidated via conditional requests.</p>
+ *
+ * <p>For testing against stand-ins, the base URL of the API can be configured via
+ * <code>$ARC_GITLAB_API</code>/ <code>-Darc.gitlab.api</code>, and the URLs from which projects
+ * are cloned via the format string <code>$ARC_GIT_URL</code>/ <code>-Darc.git.url</code>, with
+ * the project's path as its only argument, e.g. <code>file:///srv/git/%s.git</code>.</p>
  */
 public class Arc {
 
@@ -66,9 +85,13 @@ public class Arc {
 
         /**
          * Constructs a Git URL for cloning the repository of this project.
-         * @return a Git URL, e.g. <code>git@gitlab.tamu.edu:test/project.git</code>
+         * @return a Git URL, e.g. <code>git@gitlab.tamu.edu:test/project.git</code>, or as
+         *     configured via <code>$ARC_GIT_URL</code>
          */
         public String gitUrl() {
+            if (GIT_URL != null) {
+                return String.format(GIT_URL, path);
+            }
             return String.join(":",
                 String.join("@", "git", GIT_LAB_HOST),
                 String.join(".", path, "git")
@@ -122,6 +145,19 @@ public class Arc {
 
     public static final String GIT_LAB_HOST = "gitlab.tamu.edu";
 
+    private static final String GIT_URL = Util.config("ARC_GIT_URL", "arc.git.url").orElse(null);
+
+    private static final Duration DEFAULT_CACHE_TTL = Duration.ofHours(12);
+    private static final long CACHE_SIZE = 64L * 1024 * 1024;
+
+    private static final Metrics.Counters PAGES = Metrics.counters(
+        "arc_gitlab_requests_total", "GitLab API pages requested, by HTTP status", "status"
+    );
+
+    private static final Histogram LATENCIES = Metrics.summaries(
+        "arc_gitlab_request_duration_seconds", "Latency of GitLab API requests", 1e-3
+    ).labels();
+
     private final Logger logger = Logging.forClass(Arc.class);
     private final Moshi moshi = new Moshi.Builder().build();
 
@@ -132,15 +168,14 @@ public class Arc {
     /**
      * Creates an instance of ARC's infrastructure.
      *
-     * <p>The private token required for accessing GitLab's API is read from the environment
-     * variable <code>GITLAB_PRIVATE_TOKEN</code>.</p>
+     * <p>The private token required for accessing GitLab's API is read from
+     * <code>$GITLAB_PRIVATE_TOKEN</code>/ <code>-Dgitlab.private.token</code>.</p>
      *
-     * @throws NullPointerException if the environment variable is not defined
+     * @throws NullPointerException if the token is not configured
      */
     public Arc() {
-        this(Objects.requireNonNull(
-                System.getenv("GITLAB_PRIVATE_TOKEN"),
-                "$GITLAB_PRIVATE_TOKEN"
+        this(Util.config("GITLAB_PRIVATE_TOKEN", "gitlab.private.token").orElseThrow(
+            () -> new NullPointerException("$GITLAB_PRIVATE_TOKEN")
         ));
     }
 
@@ -150,6 +185,30 @@ public class Arc {
      * @param gitLabToken the private token to authenticate requests against GitLab's API
      */
     public Arc(String gitLabToken) {
+        this(
+            Util.config("ARC_GITLAB_API", "arc.gitlab.api")
+                .map(url -> Objects.requireNonNull(HttpUrl.parse(url), url))
+                .orElseGet(() -> new HttpUrl.Builder()
+                    .scheme("https").host(GIT_LAB_HOST)
+                    .addEncodedPathSegments("api/v3/").build()),
+            gitLabToken,
+            Util.config("ARC_GITLAB_CACHE", "arc.gitlab.cache").map(File::new).orElse(null),
+            Duration.ofSeconds(Util.config("ARC_GITLAB_CACHE_TTL", "arc.gitlab.cache.ttl")
+                .map(Long::parseLong)
+                .orElse(DEFAULT_CACHE_TTL.getSeconds()))
+        );
+    }
+
+    /**
+     * Creates an instance of ARC's infrastructure.
+     *
+     * @param apiUrl the base URL of GitLab's API
+     * @param gitLabToken the private token to authenticate requests against GitLab's API
+     * @param cacheDirectory the directory in which API responses are cached or
+     *                       <code>null</code> if responses shall not be cached
+     * @param cacheTtl the time for which cached responses are used without revalidation
+     */
+    public Arc(HttpUrl apiUrl, String gitLabToken, File cacheDirectory, Duration cacheTtl) {
         final OkHttpClient.Builder httpClientBuilder = Util.trustfulHttpClient(
             new OkHttpClient.Builder()
         );
@@ -158,10 +217,22 @@ public class Arc {
                 new HttpLoggingInterceptor(logger::fine).setLevel(BODY)
             );
         }
+        if (cacheDirectory != null) {
+            final String cacheControl = String.format("private, max-age=%d", cacheTtl.getSeconds());
+            httpClientBuilder
+                .cache(new Cache(Util.existingDirectory(cacheDirectory), CACHE_SIZE))
+                .addNetworkInterceptor(chain -> {
+                    final Response response = chain.proceed(chain.request());
+                    return response.isSuccessful() || response.code() == 304
+                        ? response.newBuilder()
+                            .header("Cache-Control", cacheControl)
+                            .removeHeader("Pragma").removeHeader("Expires")
+                            .build()
+                        : response;
+                });
+        }
         this.httpClient = httpClientBuilder.build();
-        this.apiUrl = new HttpUrl.Builder()
-                .scheme("https").host(GIT_LAB_HOST)
-                .addEncodedPathSegments("api/v3/").build();
+        this.apiUrl = apiUrl;
         this.gitLabToken = gitLabToken;
     }
 
@@ -172,8 +243,7 @@ public class Arc {
      * @throws IOException in case of a network error
      */
     public GitLabProject[] rdfRepositories() throws IOException {
-        return gitLabProjects().stream()
-                .filter(gp -> gp.name.startsWith("arc_rdf"))
+        return gitLabProjects(gp -> gp.name.startsWith("arc_rdf")).stream()
                 .sorted(Comparator.comparing((GitLabProject gp) -> gp.path))
                 .toArray(GitLabProject[]::new);
     }
@@ -185,9 +255,24 @@ public class Arc {
      * @throws IOException in case of a network error
      */
     public List<GitLabProject> gitLabProjects() throws IOException {
+        return gitLabProjects(gp -> true);
+    }
+
+    /**
+     * Returns accessible projects in ARC's GitLab service matching a filter.
+     *
+     * <p>The filter is applied while the API responses are parsed, so non-matching projects
+     * are never held in memory.</p>
+     *
+     * @param filter the filter selecting projects
+     * @return a list of matching GitLab projects
+     * @throws IOException in case of a network error
+     */
+    public List<GitLabProject> gitLabProjects(Predicate<GitLabProject> filter)
+        throws IOException {
         return gitLabPages(
             url -> url.addPathSegment("projects"),
-            GitLabProject.class, 100, 25
+            GitLabProject.class, filter, 100, 25
         );
     }
 
@@ -197,28 +282,138 @@ public class Arc {
                 .addHeader("PRIVATE-TOKEN", gitLabToken);
     }
 
+    /**
+     * Fetches paginated API results.
+     *
+     * <p>The total number of pages is taken from the first response; remaining pages are then
+     * requested concurrently. If the API does not report the total, pages are requested one
+     * after another until a page is not full.</p>
+     */
     private <T> List<T> gitLabPages(Function<HttpUrl.Builder, HttpUrl.Builder> url,
-                                    Class<T> type, int pageSize, int maxPages) throws IOException {
-        final JsonAdapter<List<T>> jsonAdapter = moshi.adapter(
-            Types.newParameterizedType(List.class, type)
+                                    Class<T> type, Predicate<T> filter,
+                                    int pageSize, int maxPages) throws IOException {
+        final JsonAdapter<T> jsonAdapter = moshi.adapter(type);
+        final int perPage = Math.max(1, Math.min(100, pageSize));
+        final Function<Integer, Request> pageRequest = page -> gitLabRequest(
+            url.andThen(gitLabPaginate(page, perPage))
+        ).build();
+
+        final GitLabPage<T> firstPage = gitLabPage(
+            httpClient.newCall(pageRequest.apply(1)).execute(), jsonAdapter, filter
         );
+        final List<T> result = new ArrayList<>(firstPage.matches);
 
-        pageSize = Math.max(1, Math.min(100, pageSize));
-        final List<T> result = new LinkedList<>();
-        for (int page = 1; page <= maxPages; page++) {
-            final Function<HttpUrl.Builder, HttpUrl.Builder> paginatedUrl = url
-                .andThen(gitLabPaginate(page, pageSize));
-            final Request request = gitLabRequest(paginatedUrl).build();
-            final Response response = httpClient.newCall(request).execute();
-            final List<T> pageContents = jsonAdapter.fromJson(response.body().source());
-            result.addAll(pageContents);
-            if (pageContents.size() < pageSize) {
-                break;
+        if (firstPage.totalPages > 0) {
+            final List<CompletableFuture<GitLabPage<T>>> pages = new ArrayList<>();
+            for (int page = 2; page <= Math.min(maxPages, firstPage.totalPages); page++) {
+                pages.add(enqueue(pageRequest.apply(page), jsonAdapter, filter));
+            }
+            for (CompletableFuture<GitLabPage<T>> page : pages) {
+                try {
+                    result.addAll(page.get().matches);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof IOException
+                        ? (IOException) e.getCause()
+                        : new IOException(e.getCause());
+                }
+            }
+        } else {
+            GitLabPage<T> lastPage = firstPage;
+            for (int page = 2; page <= maxPages && lastPage.size >= perPage; page++) {
+                lastPage = gitLabPage(
+                    httpClient.newCall(pageRequest.apply(page)).execute(), jsonAdapter, filter
+                );
+                result.addAll(lastPage.matches);
             }
         }
         return result;
     }
 
+    private <T> CompletableFuture<GitLabPage<T>> enqueue(Request request,
+                                                         JsonAdapter<T> jsonAdapter,
+                                                         Predicate<T> filter) {
+        final CompletableFuture<GitLabPage<T>> page = new CompletableFuture<>();
+        httpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                page.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try {
+                    page.complete(gitLabPage(response, jsonAdapter, filter));
+                } catch (IOException | RuntimeException e) {
+                    page.completeExceptionally(e);
+                }
+            }
+        });
+        return page;
+    }
+
+    /**
+     * Parses a page of API results, streaming each entry through the filter.
+     */
+    private static <T> GitLabPage<T> gitLabPage(Response response, JsonAdapter<T> jsonAdapter,
+                                                Predicate<T> filter) throws IOException {
+        final GitLabPageEvent event = new GitLabPageEvent();
+        event.begin();
+        final GitLabPage<T> page = new GitLabPage<>(totalPages(response));
+        try (ResponseBody body = response.body()) {
+            if (!response.isSuccessful()) {
+                throw new IOException(response.toString());
+            }
+            final JsonReader reader = JsonReader.of(body.source());
+            reader.beginArray();
+            while (reader.hasNext()) {
+                final T entry = jsonAdapter.fromJson(reader);
+                page.size++;
+                if (filter.test(entry)) {
+                    page.matches.add(entry);
+                }
+            }
+            reader.endArray();
+            return page;
+        } finally {
+            PAGES.labels(Integer.toString(response.code())).inc();
+            LATENCIES.record(response.receivedResponseAtMillis() - response.sentRequestAtMillis());
+            event.end();
+            if (event.shouldCommit()) {
+                event.url = response.request().url().toString();
+                event.status = response.code();
+                event.latency = response.receivedResponseAtMillis()
+                    - response.sentRequestAtMillis();
+                event.entries = page.size;
+                event.matches = page.matches.size();
+                event.commit();
+            }
+        }
+    }
+
+    private static int totalPages(Response response) {
+        try {
+            return Integer.parseInt(response.header("X-Total-Pages", "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * A page of API results.
+     */
+    private static class GitLabPage<T> {
+        final int totalPages;
+        final List<T> matches = new ArrayList<>();
+        int size = 0;
+
+        GitLabPage(int totalPages) {
+            this.totalPages = totalPages;
+        }
+    }
+
     private static Function<HttpUrl.Builder, HttpUrl.Builder> gitLabPaginate(int page,
                                                                              int pageSize) {
         return url -> url
@@ -0,0 +1,291 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+
+/**
+ * Log handler writing to <code>stderr</code> on a background thread.
+ *
+ * <p>Logging threads claim a slot in a bounded ring buffer via compare-and-set and return
+ * immediately; a single consumer thread formats and writes the records, reusing one buffer.
+ * Messages are localized and their parameters substituted on the consumer thread as well.
+ * If the ring is full, records are dropped rather than blocking the logging thread; the
+ * number of dropped records is written once the consumer catches up.</p>
+ *
+ * <p>The output has the layout of {@link Logging.Formatter}, except that the source is given
+ * by the logger name, as inferring the calling class would require a stack walk on the logging
+ * thread, and the thread by its name.</p>
+ *
+ * <p>The capacity of the ring buffer is configured via the logging property
+ * <code>org.nines.AsyncLogHandler.capacity</code> (default: 8192, rounded up to a power of
+ * two), the level via <code>org.nines.AsyncLogHandler.level</code>.</p>
+ */
+public class AsyncLogHandler extends Handler {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Entry[] ring;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread consumer;
+    private final Writer out;
+    private final java.util.logging.Formatter messages = new Logging.Formatter();
+    private volatile boolean closed;
+
+    private final StringBuilder line = new StringBuilder(256);
+    private final char[] timestamp = new char[19];
+    private long timestampSecond = Long.MIN_VALUE;
+    private long droppedReported;
+
+    public AsyncLogHandler() {
+        this(capacity());
+    }
+
+    public AsyncLogHandler(int capacity) {
+        this(capacity, new BufferedWriter(
+            new OutputStreamWriter(System.err, Charset.defaultCharset())
+        ));
+    }
+
+    AsyncLogHandler(int capacity, Writer out) {
+        final int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.ring = new Entry[size];
+        for (int ei = 0; ei < size; ei++) {
+            ring[ei] = new Entry(ei - size);
+        }
+        this.mask = size - 1;
+        this.out = out;
+
+        final String level = LogManager.getLogManager().getProperty(
+            AsyncLogHandler.class.getName() + ".level"
+        );
+        setLevel(level == null ? Level.ALL : Level.parse(level.trim()));
+
+        this.consumer = new Thread(this::consume, "async-log-handler");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head.get() >= ring.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        final Entry entry = ring[(int) sequence & mask];
+        entry.record = record;
+        entry.thread = Thread.currentThread();
+        entry.sequence = sequence;
+    }
+
+    /**
+     * The number of records dropped because the ring buffer was full.
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Waits briefly for published records to be written.
+     */
+    @Override
+    public void flush() {
+        final long published = tail.get();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (head.get() < published && consumer.isAlive() && System.nanoTime() < deadline) {
+            LockSupport.unpark(consumer);
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Writes all published records and stops the consumer thread.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void consume() {
+        long sequence = head.get();
+        while (true) {
+            final Entry entry = ring[(int) sequence & mask];
+            if (entry.sequence != sequence) {
+                if (closed && sequence == tail.get()) {
+                    break;
+                }
+                writeDropped();
+                flushOutput();
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            final LogRecord record = entry.record;
+            final Thread thread = entry.thread;
+            entry.record = null;
+            entry.thread = null;
+            head.lazySet(++sequence);
+            write(record, thread);
+        }
+        writeDropped();
+        flushOutput();
+    }
+
+    private void write(LogRecord record, Thread thread) {
+        line.setLength(0);
+        appendTimestamp(record.getMillis());
+        line.append(' ');
+        pad(record.getLevel().getName(), 10, false);
+        line.append(" [");
+        pad(suffix(record.getLoggerName(), 50), 50, true);
+        line.append("] <");
+        pad(suffix(thread.getName(), 50), 50, true);
+        line.append("> ");
+        line.append(messages.formatMessage(record));
+        if (record.getThrown() != null) {
+            final StringWriter stackTrace = new StringWriter();
+            try (PrintWriter pw = new PrintWriter(stackTrace)) {
+                pw.println();
+                record.getThrown().printStackTrace(pw);
+            }
+            line.append(stackTrace);
+        }
+        line.append(System.lineSeparator());
+        try {
+            out.append(line);
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    private void writeDropped() {
+        final long total = dropped.sum();
+        if (total == droppedReported) {
+            return;
+        }
+        final LogRecord record = new LogRecord(Level.WARNING, String.format(
+            "%d log record(s) dropped", total - droppedReported
+        ));
+        record.setLoggerName(AsyncLogHandler.class.getName());
+        droppedReported = total;
+        write(record, Thread.currentThread());
+    }
+
+    private void flushOutput() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.FLUSH_FAILURE);
+        }
+    }
+
+    private void appendTimestamp(long millis) {
+        final long second = Math.floorDiv(millis, 1000);
+        if (second != timestampSecond) {
+            final LocalDateTime time = LocalDateTime.ofInstant(
+                Instant.ofEpochSecond(second), ZoneId.systemDefault()
+            );
+            digits(time.getYear(), 0, 4);
+            timestamp[4] = '-';
+            digits(time.getMonthValue(), 5, 2);
+            timestamp[7] = '-';
+            digits(time.getDayOfMonth(), 8, 2);
+            timestamp[10] = ' ';
+            digits(time.getHour(), 11, 2);
+            timestamp[13] = ':';
+            digits(time.getMinute(), 14, 2);
+            timestamp[16] = ':';
+            digits(time.getSecond(), 17, 2);
+            timestampSecond = second;
+        }
+        line.append(timestamp);
+    }
+
+    private void digits(int value, int offset, int length) {
+        for (int di = offset + length - 1; di >= offset; di--) {
+            timestamp[di] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private void pad(String str, int width, boolean left) {
+        final String value = str == null ? "null" : str;
+        if (left) {
+            line.append(value);
+        }
+        for (int pi = value.length(); pi < width; pi++) {
+            line.append(' ');
+        }
+        if (!left) {
+            line.append(value);
+        }
+    }
+
+    private static String suffix(String str, int length) {
+        return str == null || str.length() <= length ? str : str.substring(str.length() - length);
+    }
+
+    private static int capacity() {
+        final String capacity = LogManager.getLogManager().getProperty(
+            AsyncLogHandler.class.getName() + ".capacity"
+        );
+        return capacity == null ? 8192 : Integer.parseInt(capacity.trim());
+    }
+
+    private static class Entry {
+        LogRecord record;
+        Thread thread;
+        volatile long sequence;
+
+        Entry(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+}
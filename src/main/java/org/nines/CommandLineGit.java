@@ -0,0 +1,263 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import org.nines.events.GitCommandEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.nines.Util.join;
+
+/**
+ * Access to a git repository via the command line tool.
+ */
+public class CommandLineGit extends Git {
+
+    private static final Logger LOG = Logging.forClass(CommandLineGit.class);
+
+    static final String REMOTE_TRACKING_REFSPEC = "+refs/heads/*:refs/remotes/origin/*";
+
+    private static final int ADD_BATCH_SIZE = 500;
+
+    public CommandLineGit(Arc.GitLabProject gitLabProject, File repository) {
+        super(gitLabProject, repository);
+    }
+
+    /**
+     * Clones a GitLab project to the given workspace directory, if the target directory does not
+     * exist yet.
+     *
+     * @param workspace the workspace directory
+     * @param gitLabProject the GitLab project to clone
+     * @return an accessor for the cloned repository
+     */
+    public static CommandLineGit clone(File workspace, Arc.GitLabProject gitLabProject) {
+        return clone(workspace, gitLabProject, false);
+    }
+
+    /**
+     * Clones a GitLab project to the given workspace directory, if the target directory does not
+     * exist yet, honoring the configured {@link Git#cloneDepth() depth} and
+     * {@link Git#cloneFilter() filter}.
+     *
+     * @param workspace the workspace directory
+     * @param gitLabProject the GitLab project to clone
+     * @param bare <code>true</code> if a bare repository shall be created
+     * @return an accessor for the cloned repository
+     */
+    public static CommandLineGit clone(File workspace, Arc.GitLabProject gitLabProject,
+                                       boolean bare) {
+        final File directory = new File(
+            workspace,
+            bare ? gitLabProject.name + ".git" : gitLabProject.name
+        );
+        if (!directory.isDirectory()) {
+            final List<String> command = new LinkedList<>(Arrays.asList("git", "clone"));
+            if (bare) {
+                command.add("--bare");
+            }
+            cloneDepth().ifPresent(depth -> command.add(String.format("--depth=%d", depth)));
+            cloneFilter().ifPresent(filter -> command.add(String.format("--filter=%s", filter)));
+            command.add(gitLabProject.gitUrl());
+            command.add(directory.getName());
+            execute(workspace, command);
+        }
+        return new CommandLineGit(gitLabProject, directory);
+    }
+
+    /**
+     * Looks up the head commit of a branch in a GitLab project via <code>git ls-remote</code>.
+     *
+     * @see Git.Backend#remoteHead(File, Arc.GitLabProject, String)
+     */
+    public static String remoteHead(File workspace, Arc.GitLabProject gitLabProject,
+                                    String branch) {
+        final String refs = execute(workspace, Arrays.asList(
+            "git", "ls-remote", gitLabProject.gitUrl(), "refs/heads/" + branch
+        ));
+        return refs.isEmpty() ? null : refs.split("\\s+", 2)[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>In a bare repository, the branch ref is updated via <code>git update-ref</code>;
+     * otherwise it is reset via <code>git checkout -f -B</code>.</p>
+     */
+    @Override
+    public String fetch(String branch) {
+        final boolean bare = Boolean.parseBoolean(
+            execute("git", "rev-parse", "--is-bare-repository").trim()
+        );
+        // ignore configured refspecs, which map local branches in bare clones made by JGit
+        final List<String> command = new LinkedList<>(Arrays.asList("git", "fetch", "--refmap="));
+        cloneDepth().ifPresent(depth -> command.add(String.format("--depth=%d", depth)));
+        command.addAll(Arrays.asList("origin", REMOTE_TRACKING_REFSPEC));
+        final String fetched = execute(command);
+
+        final String local = "refs/heads/" + branch;
+        final String upstream = "refs/remotes/origin/" + branch;
+        if (head(branch) != null) {
+            final int unpushed = Integer.parseInt(execute(
+                "git", "rev-list", "--count", upstream + ".." + local
+            ).trim());
+            if (unpushed > 0) {
+                throw new IllegalStateException(join(": ", repository.toString(), String.format(
+                    "%s has %d commit(s) not in %s, push or remove them", branch, unpushed, upstream
+                )));
+            }
+        }
+        return join("\n", fetched, bare
+            ? execute("git", "update-ref", local, upstream)
+            : execute("git", "checkout", "-f", "-B", branch, upstream)
+        );
+    }
+
+    @Override
+    public String head(String branch) {
+        final String head = execute(
+            "git", "for-each-ref", "--format=%(objectname)", "refs/heads/" + branch
+        );
+        return head.isEmpty() ? null : head;
+    }
+
+    @Override
+    public void checkoutBranch(String branch, boolean create) {
+        final List<String> command = new LinkedList<>(Arrays.asList("git", "checkout"));
+        if (create) {
+            command.addAll(Arrays.asList("-t", "-b"));
+        }
+        command.add(branch);
+        execute(command);
+    }
+
+    @Override
+    public String reset() {
+        return execute("git", "checkout", "--", ".");
+    }
+
+    @Override
+    public String status() {
+        return execute("git", "status", "--porcelain");
+    }
+
+    @Override
+    public String commit(String commitMessage) {
+        return execute("git", "commit", "-a", "-m", commitMessage);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Paths are staged in batches, keeping command lines within the limits of the OS.</p>
+     */
+    @Override
+    public String commit(String commitMessage, Collection<Path> paths) {
+        final List<Path> pathList = new ArrayList<>(paths);
+        for (int pi = 0; pi < pathList.size(); pi += ADD_BATCH_SIZE) {
+            final List<String> command = new LinkedList<>(Arrays.asList("git", "add", "--"));
+            for (Path path : pathList.subList(pi, Math.min(pi + ADD_BATCH_SIZE, pathList.size()))) {
+                command.add(gitPath(path));
+            }
+            execute(command);
+        }
+        return execute("git", "commit", "-m", commitMessage);
+    }
+
+    @Override
+    public String push() {
+        return execute("git", "push", "-u", "origin");
+    }
+
+    public String execute(List<String> command) {
+        return execute(repository, command);
+    }
+
+    public String execute(String... command) {
+        return execute(repository, command);
+    }
+
+    private static String execute(File directory, String... command) {
+        return execute(directory, Arrays.asList(command));
+    }
+
+    static String execute(File directory, List<String> command) {
+        final GitCommandEvent event = new GitCommandEvent();
+        event.begin();
+        event.exitCode = -1;
+        try {
+            final Path outputLog = Files.createTempFile(Git.class.getName(), "-output.log");
+            final Path errorLog = Files.createTempFile(Git.class.getName(), "-error.log");
+            try {
+                final int exitValue = new ProcessBuilder(command)
+                        .directory(directory)
+                        .redirectError(errorLog.toFile())
+                        .redirectOutput(outputLog.toFile())
+                        .start()
+                        .waitFor();
+                event.exitCode = exitValue;
+
+                if (exitValue != 0) {
+                    throw new RuntimeException(join("\n\n",
+                            join(": ", directory.toString(), String.join(" ", command)),
+                            String.format("Exited with value %d", exitValue),
+                            join("\n", Files.readAllLines(errorLog, Charset.defaultCharset()))
+                    ));
+                }
+
+                final String output = join("\n", Files.readAllLines(
+                    outputLog,
+                    Charset.defaultCharset()
+                ));
+                LOG.fine(() -> join("\n\n",
+                        join(": ", directory.toString(), String.join(" ", command)),
+                        output
+                ));
+
+                return output;
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                Files.delete(errorLog);
+                Files.delete(outputLog);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            COMMANDS.labels(
+                "cli", command.size() > 1 ? command.get(1) : String.join(" ", command),
+                event.exitCode == 0 ? "success" : "failure"
+            ).inc();
+            event.end();
+            if (event.shouldCommit()) {
+                event.repository = directory.toString();
+                event.command = String.join(" ", command);
+                event.commit();
+            }
+        }
+    }
+}
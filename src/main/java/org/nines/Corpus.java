@@ -0,0 +1,623 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import net.middell.XML;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.vocabulary.DC;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import static org.nines.Util.join;
+
+/**
+ * Generates a synthetic corpus of RDF/XML sources in the shape of ARC's repositories, for
+ * testing at scale without access to ARC's GitLab service.
+ *
+ * <p>The corpus consists of catalog projects, named <code>arc_rdf_&lt;archive&gt;</code>, and
+ * page projects, named <code>arc_rdf_pages_&lt;archive&gt;</code>. Catalog records carry the
+ * properties required by {@link Schema}, with roles, types, genres and disciplines drawn from its
+ * vocabularies; a configurable share of records additionally carries one of the property values
+ * rewritten by the {@link Migration#RULES_RESOURCE shipped migration}. Page records carry a large
+ * <code>collex:text</code> and refer to the records of the respective catalog project.</p>
+ *
+ * <p>The total size of the corpus is split evenly among its projects, and the size of each
+ * project among files of heavy-tailed sizes, so few large files hold a good part of the data.
+ * Files are generated in parallel, each from its own seed derived from the corpus' seed, so the
+ * same configuration always yields the same corpus. Projects are written either as plain
+ * directories or, committed to their <code>master</code> branch, as bare git repositories which
+ * can serve as clone sources.</p>
+ *
+ * <p>Run via <code>mvn exec:exec -Dmain.class=org.nines.Corpus</code>, configured by</p>
+ * <ul>
+ *     <li><code>$ARC_CORPUS_DIR</code>/ <code>-Darc.corpus.dir</code>: the target directory
+ *     (default: <code>corpus</code>)</li>
+ *     <li><code>$ARC_CORPUS_SIZE</code>/ <code>-Darc.corpus.size</code>: the total size, with an
+ *     optional unit <code>K</code>, <code>M</code>, <code>G</code> or <code>T</code>
+ *     (default: <code>100M</code>)</li>
+ *     <li><code>$ARC_CORPUS_SEED</code>/ <code>-Darc.corpus.seed</code> (default: 0)</li>
+ *     <li><code>$ARC_CORPUS_PROJECTS</code>/ <code>-Darc.corpus.projects</code>: the number of
+ *     projects (default: 8)</li>
+ *     <li><code>$ARC_CORPUS_FILE_SIZE</code>/ <code>-Darc.corpus.file.size</code>: the maximum
+ *     size of a file (default: <code>64M</code>)</li>
+ *     <li><code>$ARC_CORPUS_PAGES</code>/ <code>-Darc.corpus.pages</code>: the share of page
+ *     projects (default: 0.25)</li>
+ *     <li><code>$ARC_CORPUS_HIT_RATIO</code>/ <code>-Darc.corpus.hit.ratio</code>: the share of
+ *     catalog records carrying a value rewritten by the migration (default: 0.1)</li>
+ *     <li><code>$ARC_CORPUS_GIT</code>/ <code>-Darc.corpus.git</code>: whether to write bare git
+ *     repositories instead of plain directories (default: false)</li>
+ * </ul>
+ */
+public class Corpus {
+
+    private static final Logger LOG = Logging.forClass(Corpus.class);
+
+    public static final String BASE = "http://example.org/arc/";
+
+    private static final String MIGRATION_NS = "http://www.collex.org/migration#";
+
+    private static final String BRANCH = "master";
+
+    private static final int FILES_PER_DIRECTORY = 1000;
+
+    private static final int PAGES_PER_WORK = 400;
+
+    private static final int TEXT_LENGTH = 8192;
+
+    /**
+     * Time of the commits in generated repositories, fixed so that the same corpus always yields
+     * the same commits.
+     */
+    private static final long COMMIT_TIME = Instant.parse("2017-01-01T00:00:00Z").toEpochMilli();
+
+    private static final String[] TYPES = sorted(Schema.VALID_TYPES);
+    private static final String[] GENRES = sorted(Schema.VALID_GENRES);
+    private static final String[] DISCIPLINES = sorted(Schema.VALID_DISCIPLINES);
+    private static final String[] ROLES = Schema.VALID_ROLES.stream()
+        .map(Property::getLocalName)
+        .sorted()
+        .toArray(String[]::new);
+    private static final String[] FREQUENT_ROLES = { "AUT", "PBL", "EDT", "TRL", "ILL", "PRT" };
+
+    public final long seed;
+    public final long size;
+    public final int projects;
+    public final long maxFileSize;
+    public final double pagesRatio;
+    public final double hitRatio;
+
+    private final List<PropertyValue> hits;
+    private final Map<String, String> prefixes = new LinkedHashMap<>();
+    private final String[] words;
+    private final LongAdder records = new LongAdder();
+
+    /**
+     * Configures a corpus.
+     *
+     * @param seed the seed from which all content is derived
+     * @param size the total size in bytes
+     * @param projects the number of projects
+     * @param maxFileSize the maximum size of a file in bytes
+     * @param pagesRatio the share of page projects
+     * @param hitRatio the share of catalog records carrying a value rewritten by the migration
+     * @throws IOException if the shipped migration cannot be read
+     */
+    public Corpus(long seed, long size, int projects, long maxFileSize, double pagesRatio,
+                  double hitRatio) throws IOException {
+        if (projects < 1 || maxFileSize < 1024) {
+            throw new IllegalArgumentException(String.format(
+                "%d project(s) with files of at most %d byte(s)", projects, maxFileSize
+            ));
+        }
+        this.seed = seed;
+        this.size = size;
+        this.projects = projects;
+        this.maxFileSize = maxFileSize;
+        this.pagesRatio = pagesRatio;
+        this.hitRatio = hitRatio;
+        this.hits = ruleValues();
+        this.words = words(new Random(seed), 4096);
+
+        prefixes.put(RDF.uri, "rdf");
+        prefixes.put(RDFS.uri, "rdfs");
+        prefixes.put(DC.NS, "dc");
+        prefixes.put(Collex.uri, "collex");
+        prefixes.put(LocRelators.uri, "role");
+        for (PropertyValue hit : hits) {
+            prefixes.computeIfAbsent(hit.namespaceUri, ns -> "ns" + prefixes.size());
+        }
+    }
+
+    /**
+     * Configures a corpus via the environment/ system properties listed above.
+     */
+    public static Corpus configured() throws IOException {
+        return new Corpus(
+            Util.config("ARC_CORPUS_SEED", "arc.corpus.seed").map(Long::parseLong).orElse(0L),
+            Util.config("ARC_CORPUS_SIZE", "arc.corpus.size").map(Util::bytes)
+                .orElse(100L << 20),
+            Util.config("ARC_CORPUS_PROJECTS", "arc.corpus.projects").map(Integer::parseInt)
+                .orElse(8),
+            Util.config("ARC_CORPUS_FILE_SIZE", "arc.corpus.file.size").map(Util::bytes)
+                .orElse(64L << 20),
+            Util.config("ARC_CORPUS_PAGES", "arc.corpus.pages").map(Double::parseDouble)
+                .orElse(0.25),
+            Util.config("ARC_CORPUS_HIT_RATIO", "arc.corpus.hit.ratio").map(Double::parseDouble)
+                .orElse(0.1)
+        );
+    }
+
+    public static void main(String[] args) throws Exception {
+        Logging.configure();
+        final Corpus corpus = Corpus.configured();
+        final File directory = new File(
+            Util.config("ARC_CORPUS_DIR", "arc.corpus.dir").orElse("corpus")
+        );
+        final boolean git = Util.config("ARC_CORPUS_GIT", "arc.corpus.git")
+            .map(Boolean::parseBoolean)
+            .orElse(false);
+        LOG.info(() -> String.format("Generating %s in %s", corpus, directory));
+        final List<File> written = corpus.write(directory, git);
+        LOG.info(() -> String.format("Generated %d project(s)", written.size()));
+    }
+
+    /**
+     * Collects the property values matched by the subject filters of the shipped migration.
+     */
+    public static List<PropertyValue> ruleValues() throws IOException {
+        final List<PropertyValue> values = new ArrayList<>();
+        final NodeList subjects;
+        try (InputStream rules = Migration.class.getResourceAsStream(Migration.RULES_RESOURCE)) {
+            subjects = XML.newDocumentBuilder().parse(rules)
+                .getElementsByTagNameNS(MIGRATION_NS, "subjects");
+        } catch (SAXException e) {
+            throw new IOException(e);
+        }
+        for (int si = 0; si < subjects.getLength(); si++) {
+            final NodeList descendants = ((Element) subjects.item(si)).getElementsByTagName("*");
+            for (int di = 0; di < descendants.getLength(); di++) {
+                final Element descendant = (Element) descendants.item(di);
+                if (!MIGRATION_NS.equals(descendant.getNamespaceURI())) {
+                    values.add(new PropertyValue(descendant));
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Plans the projects of this corpus.
+     */
+    public List<Project> projects() {
+        final Random random = new Random(seed);
+        final List<Project> planned = new ArrayList<>(projects);
+        for (int pi = 0; pi < projects; pi++) {
+            final long budget = size / projects + (pi < size % projects ? 1 : 0);
+            planned.add(new Project(pi, random.nextDouble() < pagesRatio, budget,
+                random.nextLong()));
+        }
+        return planned;
+    }
+
+    /**
+     * Writes all projects of this corpus to a directory.
+     *
+     * @param directory the target directory, created if necessary
+     * @param git whether to write bare git repositories instead of plain directories
+     * @return the directories of the written projects
+     */
+    public List<File> write(File directory, boolean git) throws IOException {
+        Files.createDirectories(directory.toPath());
+        final List<Project> planned = projects();
+        try (Progress progress = Progress.configured("corpus", records::sum)) {
+            progress.expectProjects(planned.size());
+            final List<File> written = new ArrayList<>(planned.size());
+            for (Project project : planned) {
+                progress.inventory(project.name, project.fileSizes.length, project.size);
+                written.add(git
+                    ? project.writeRepository(directory, progress)
+                    : project.writeDirectory(directory, progress));
+                progress.completed(project.name);
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Generates a catalog document.
+     *
+     * @param archive the archive of the catalog's records
+     * @param file the index of the document within its project, unique to its records' URIs
+     * @param targetSize the size of the document in bytes, exceeded by at most one record
+     * @param random the source of content
+     * @return the RDF/XML document, encoded in UTF-8
+     */
+    public byte[] catalog(String archive, int file, long targetSize, Random random) {
+        final StringBuilder rdf = header(targetSize);
+        for (int ri = 0; rdf.length() < targetSize; ri++) {
+            final String id = join("/", archive, Integer.toString(file), Integer.toString(ri));
+            rdf.append("  <collex:record rdf:about=\"").append(BASE).append(id).append("\">\n");
+            // values of singleton properties matched by the migration replace the regular ones
+            final PropertyValue hit = !hits.isEmpty() && random.nextDouble() < hitRatio
+                ? hits.get(random.nextInt(hits.size()))
+                : null;
+            if (hit != null) {
+                property(rdf, prefixes.get(hit.namespaceUri), hit.localName, hit.value);
+            }
+            if (!replaced(hit, Collex.archive)) {
+                property(rdf, "collex", "archive", archive);
+            }
+            property(rdf, "collex", "federation", "NINES");
+            if (!replaced(hit, DC.title)) {
+                property(rdf, "dc", "title", sentence(random, 2 + random.nextInt(10)));
+            }
+            for (int ai = 0, authors = 1 + random.nextInt(3); ai < authors; ai++) {
+                property(rdf, "role", random.nextInt(4) == 0
+                    ? ROLES[random.nextInt(ROLES.length)]
+                    : FREQUENT_ROLES[random.nextInt(FREQUENT_ROLES.length)], name(random));
+            }
+            property(rdf, "dc", "date", Integer.toString(1500 + random.nextInt(500)));
+            property(rdf, "dc", "type", TYPES[random.nextInt(TYPES.length)]);
+            for (int gi = 0, genres = 1 + random.nextInt(3); gi < genres; gi++) {
+                property(rdf, "collex", "genre", GENRES[random.nextInt(GENRES.length)]);
+            }
+            for (int di = 0, disciplines = 1 + random.nextInt(2); di < disciplines; di++) {
+                property(rdf, "collex", "discipline",
+                    DISCIPLINES[random.nextInt(DISCIPLINES.length)]);
+            }
+            if (!replaced(hit, Collex.freeculture)) {
+                property(rdf, "collex", "freeculture", Boolean.toString(random.nextBoolean()));
+            }
+            if (!replaced(hit, Collex.fulltext)) {
+                property(rdf, "collex", "fulltext", Boolean.toString(random.nextBoolean()));
+            }
+            if (!replaced(hit, Collex.ocr)) {
+                property(rdf, "collex", "ocr", Boolean.toString(random.nextInt(4) == 0));
+            }
+            if (random.nextInt(3) == 0) {
+                property(rdf, "dc", "description", sentence(random, 20 + random.nextInt(80)));
+            }
+            rdf.append("    <rdfs:seeAlso rdf:resource=\"http://example.org/").append(id)
+                .append("\"/>\n");
+            rdf.append("  </collex:record>\n");
+            records.increment();
+        }
+        return footer(rdf);
+    }
+
+    /**
+     * Generates a document of page records, each with a large text.
+     *
+     * @param archive the archive of the catalog records the pages belong to
+     * @param file the index of the document within its project, unique to its records' URIs
+     * @param targetSize the size of the document in bytes, exceeded by at most one record
+     * @param random the source of content
+     * @return the RDF/XML document, encoded in UTF-8
+     */
+    public byte[] pages(String archive, int file, long targetSize, Random random) {
+        final StringBuilder rdf = header(targetSize);
+        final StringBuilder text = new StringBuilder(TEXT_LENGTH * 2);
+        String work = null;
+        for (int pi = 0; rdf.length() < targetSize; pi++) {
+            if (pi % PAGES_PER_WORK == 0) {
+                work = join("/", archive, Integer.toString(random.nextInt(FILES_PER_DIRECTORY)),
+                    Integer.toString(random.nextInt(1000)));
+            }
+            rdf.append("  <collex:page rdf:about=\"").append(BASE).append("pages/")
+                .append(archive).append('/').append(file).append('/').append(pi)
+                .append("\">\n");
+            rdf.append("    <collex:pageof rdf:resource=\"").append(BASE).append(work)
+                .append("\"/>\n");
+            property(rdf, "collex", "pagenum", Integer.toString(pi % PAGES_PER_WORK + 1));
+            text.setLength(0);
+            final int textLength = TEXT_LENGTH / 2 + random.nextInt(TEXT_LENGTH * 3 / 2);
+            while (text.length() < textLength) {
+                text.append(sentence(random, 5 + random.nextInt(25)))
+                    .append(random.nextInt(8) == 0 ? ".\n" : ". ");
+            }
+            property(rdf, "collex", "text", text.toString());
+            rdf.append("  </collex:page>\n");
+            records.increment();
+        }
+        return footer(rdf);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "corpus of %d byte(s) in %d project(s), seed %d, files <= %d byte(s), "
+                + "%.2f page project(s), %.2f hit ratio",
+            size, projects, seed, maxFileSize, pagesRatio, hitRatio
+        );
+    }
+
+    /**
+     * A project of the corpus, with the sizes of its files planned up front.
+     */
+    public class Project {
+
+        public final String name;
+        public final String archive;
+        public final boolean pages;
+        public final long size;
+
+        private final long seed;
+        private final long[] fileSizes;
+
+        Project(int index, boolean pages, long size, long seed) {
+            this.archive = String.format("syn%03d", index);
+            this.name = pages ? "arc_rdf_pages_" + archive : "arc_rdf_" + archive;
+            this.pages = pages;
+            this.size = size;
+            this.seed = seed;
+            this.fileSizes = fileSizes(new Random(seed), size);
+        }
+
+        /**
+         * The path of a file relative to the project's root.
+         */
+        public String path(int file) {
+            return String.format("rdf/%03d/%s-%06d.rdf",
+                file / FILES_PER_DIRECTORY, archive, file);
+        }
+
+        /**
+         * Generates a file; the same file is generated on every call.
+         */
+        public byte[] file(int file) {
+            final Random random = new Random(seed ^ (file + 1) * 0x9E3779B97F4A7C15L);
+            return pages
+                ? pages(archive, file, fileSizes[file], random)
+                : catalog(archive, file, fileSizes[file], random);
+        }
+
+        File writeDirectory(File directory, Progress progress) throws IOException {
+            final File root = new File(directory, name);
+            try {
+                IntStream.range(0, fileSizes.length).parallel().forEach(fi -> {
+                    try {
+                        final byte[] content = file(fi);
+                        final File target = new File(root, path(fi));
+                        Files.createDirectories(target.getParentFile().toPath());
+                        Files.write(target.toPath(), content);
+                        progress.processed(name, content.length);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            LOG.fine(() -> join(": ", root.toString(), "written"));
+            return root;
+        }
+
+        File writeRepository(File directory, Progress progress) throws IOException {
+            final File root = new File(directory, name + Constants.DOT_GIT_EXT);
+            try (org.eclipse.jgit.api.Git git = org.eclipse.jgit.api.Git.init()
+                .setDirectory(root)
+                .setBare(true)
+                .setInitialBranch(BRANCH)
+                .call()) {
+                final Repository repo = git.getRepository();
+                final Map<Integer, ObjectId> blobs = new ConcurrentHashMap<>();
+                final int[] lengths = new int[fileSizes.length];
+                IntStream.range(0, fileSizes.length).parallel().forEach(fi -> {
+                    try (ObjectInserter inserter = repo.newObjectInserter()) {
+                        final byte[] content = file(fi);
+                        blobs.put(fi, inserter.insert(Constants.OBJ_BLOB, content));
+                        lengths[fi] = content.length;
+                        inserter.flush();
+                        progress.processed(name, content.length);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+
+                final DirCache index = DirCache.newInCore();
+                final DirCacheBuilder indexBuilder = index.builder();
+                for (int fi = 0; fi < fileSizes.length; fi++) {
+                    final DirCacheEntry entry = new DirCacheEntry(path(fi));
+                    entry.setFileMode(FileMode.REGULAR_FILE);
+                    entry.setLength(lengths[fi]);
+                    entry.setObjectId(blobs.get(fi));
+                    indexBuilder.add(entry);
+                }
+                indexBuilder.finish();
+
+                final ObjectId commit;
+                try (ObjectInserter inserter = repo.newObjectInserter()) {
+                    final PersonIdent author = new PersonIdent(
+                        "ARC", "arc@example.org", COMMIT_TIME, 0
+                    );
+                    final CommitBuilder commitBuilder = new CommitBuilder();
+                    commitBuilder.setTreeId(index.writeTree(inserter));
+                    commitBuilder.setAuthor(author);
+                    commitBuilder.setCommitter(author);
+                    commitBuilder.setMessage(String.format("Synthetic %s", this));
+                    commit = inserter.insert(commitBuilder);
+                    inserter.flush();
+                }
+
+                final RefUpdate refUpdate = repo.updateRef(Constants.R_HEADS + BRANCH);
+                refUpdate.setNewObjectId(commit);
+                final RefUpdate.Result result = refUpdate.forceUpdate();
+                switch (result) {
+                    case NEW:
+                    case FORCED:
+                    case NO_CHANGE:
+                        break;
+                    default:
+                        throw new IllegalStateException(join(": ", root.toString(),
+                            result.toString()));
+                }
+            } catch (GitAPIException e) {
+                throw new IOException(join(": ", root.toString(), e.getMessage()), e);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            LOG.fine(() -> join(": ", root.toString(), "committed"));
+            return root;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%d file(s), %d byte(s))", name, fileSizes.length, size);
+        }
+    }
+
+    /**
+     * Splits a project's size into file sizes following a Pareto distribution, capped at the
+     * maximum file size. A remainder too small for a file of its own is added to the last file,
+     * unless that would exceed the maximum; then the last file gets the minimum size.
+     */
+    private long[] fileSizes(Random random, long size) {
+        final long minimum = Math.max(1024, maxFileSize / 256);
+        final List<Long> sizes = new ArrayList<>();
+        long remaining = size;
+        while (remaining > 0) {
+            final double pareto = minimum / Math.pow(1 - random.nextDouble(), 1 / 1.2);
+            long fileSize = Math.min(remaining, (long) Math.min(pareto, maxFileSize));
+            if (remaining - fileSize < minimum) {
+                fileSize = remaining <= maxFileSize ? remaining : remaining - minimum;
+            }
+            sizes.add(fileSize);
+            remaining -= fileSize;
+        }
+        Collections.shuffle(sizes, random);
+        return sizes.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static boolean replaced(PropertyValue hit, Property property) {
+        return hit != null && hit.property.equals(property);
+    }
+
+    private StringBuilder header(long targetSize) {
+        final StringBuilder rdf = new StringBuilder((int) Math.min(Integer.MAX_VALUE - 8,
+            targetSize + TEXT_LENGTH * 4));
+        rdf.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<rdf:RDF");
+        for (Map.Entry<String, String> prefix : prefixes.entrySet()) {
+            rdf.append(" xmlns:").append(prefix.getValue()).append("=\"")
+                .append(prefix.getKey()).append('"');
+        }
+        return rdf.append(">\n");
+    }
+
+    private static byte[] footer(StringBuilder rdf) {
+        return rdf.append("</rdf:RDF>\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String sentence(Random random, int length) {
+        final StringBuilder sentence = new StringBuilder(length * 8);
+        for (int wi = 0; wi < length; wi++) {
+            if (wi > 0) {
+                sentence.append(' ');
+            }
+            // squaring skews the choice towards frequent words, roughly as in natural language
+            final double skew = random.nextDouble();
+            final String word = words[(int) (skew * skew * words.length)];
+            if (wi == 0) {
+                sentence.append(Character.toUpperCase(word.charAt(0))).append(word, 1,
+                    word.length());
+            } else {
+                sentence.append(word);
+            }
+        }
+        return sentence.toString();
+    }
+
+    private String name(Random random) {
+        final String surname = words[random.nextInt(words.length)];
+        final String givenName = words[random.nextInt(words.length)];
+        return String.format("%s%s, %s%s",
+            Character.toUpperCase(surname.charAt(0)), surname.substring(1),
+            Character.toUpperCase(givenName.charAt(0)), givenName.substring(1));
+    }
+
+    private static String[] words(Random random, int count) {
+        final String consonants = "bcdfghjklmnprstvwz";
+        final String vowels = "aeiouy";
+        final String[] words = new String[count];
+        for (int wi = 0; wi < count; wi++) {
+            final StringBuilder word = new StringBuilder();
+            for (int si = 0, syllables = 1 + random.nextInt(3); si < syllables; si++) {
+                word.append(consonants.charAt(random.nextInt(consonants.length())))
+                    .append(vowels.charAt(random.nextInt(vowels.length())));
+                if (random.nextBoolean()) {
+                    word.append(consonants.charAt(random.nextInt(consonants.length())));
+                }
+            }
+            words[wi] = word.toString();
+        }
+        Arrays.sort(words, (a, b) -> Integer.compare(a.length(), b.length()));
+        return words;
+    }
+
+    private static void property(StringBuilder rdf, String prefix, String localName,
+                                 String value) {
+        rdf.append("    <").append(prefix).append(':').append(localName).append('>');
+        for (int ci = 0; ci < value.length(); ci++) {
+            final char c = value.charAt(ci);
+            if (c == '<') {
+                rdf.append("&lt;");
+            } else if (c == '&') {
+                rdf.append("&amp;");
+            } else {
+                rdf.append(c);
+            }
+        }
+        rdf.append("</").append(prefix).append(':').append(localName).append(">\n");
+    }
+
+    private static String[] sorted(Set<String> vocabulary) {
+        return vocabulary.stream().sorted().toArray(String[]::new);
+    }
+}
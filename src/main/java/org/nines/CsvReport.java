@@ -0,0 +1,214 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import au.com.bytecode.opencsv.CSVWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A CSV report written by a single thread while being fed concurrently.
+ *
+ * <p>Producers {@link #reserve() reserve} a slot for a batch of rows, e.g. the rows concerning
+ * one file, and {@link #submit(long, List) submit} the batch once it is complete. At most
+ * <code>capacity</code> batches can be pending at any time; further reservations block until
+ * the writer catches up, so memory use is bounded no matter how fast batches are produced.</p>
+ *
+ * <p>In ordered mode, batches are written in the order of their reservation, otherwise in the
+ * order of their submission. As slots are handed out in reservation order, the oldest pending
+ * batch always holds one, so ordered output cannot stall a full report.</p>
+ */
+public class CsvReport implements Closeable {
+
+    private static final Batch END = new Batch(-1, Collections.emptyList());
+
+    /**
+     * Checking for write errors flushes the CSV writer, so it is done once per this many batches
+     * and at the end.
+     */
+    private static final int ERROR_CHECK_INTERVAL = 1024;
+
+    private final CSVWriter csv;
+    private final boolean ordered;
+    private final int capacity;
+    private final Semaphore slots;
+    private final BlockingQueue<Batch> queue;
+    private final AtomicLong reservations = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private long written = 0;
+    private final Thread writer;
+    private volatile IOException failure;
+
+    /**
+     * Creates a report and starts its writer thread.
+     *
+     * @param path the path of the CSV file to write
+     * @param header the header row
+     * @param capacity the maximum number of pending batches
+     * @param ordered <code>true</code> if batches shall be written in reservation order
+     */
+    public CsvReport(Path path, String[] header, int capacity, boolean ordered)
+        throws IOException {
+        this.csv = new CSVWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8));
+        this.ordered = ordered;
+        this.capacity = capacity;
+        this.slots = new Semaphore(capacity);
+        this.queue = new LinkedBlockingQueue<>(capacity + 1);
+
+        csv.writeNext(header);
+
+        this.writer = new Thread(this::write, String.format("csv-report-%s", path.getFileName()));
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Reserves a slot for a batch of rows, blocking while the report is at capacity.
+     *
+     * @return the sequence number of the batch, to be passed on {@link #submit(long, List)}
+     */
+    public long reserve() {
+        slots.acquireUninterruptibly();
+        return reservations.getAndIncrement();
+    }
+
+    /**
+     * Submits a batch of rows for a reserved slot.
+     *
+     * <p>Every reserved slot has to be submitted, if need be with an empty batch.</p>
+     *
+     * @param sequence the sequence number obtained via {@link #reserve()}
+     * @param batch the rows to write
+     */
+    public void submit(long sequence, List<String[]> batch) {
+        try {
+            queue.put(new Batch(sequence, batch));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The number of rows written so far, excluding the header.
+     */
+    public long rows() {
+        return rows.get();
+    }
+
+    /**
+     * The number of reserved batches not yet written.
+     */
+    public int pending() {
+        return capacity - slots.availablePermits();
+    }
+
+    private void write() {
+        final Map<Long, List<String[]>> pending = new HashMap<>();
+        long next = 0;
+        try {
+            while (true) {
+                final Batch batch = queue.take();
+                if (batch == END) {
+                    break;
+                }
+                if (failure != null) {
+                    // keep draining, so producers are not blocked by a failed report
+                    slots.release();
+                    continue;
+                }
+                try {
+                    if (!ordered) {
+                        write(batch.rows);
+                        continue;
+                    }
+                    pending.put(batch.sequence, batch.rows);
+                    for (List<String[]> rows = pending.remove(next); rows != null;
+                         rows = pending.remove(next)) {
+                        write(rows);
+                        next++;
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                    slots.release(pending.size() + 1);
+                    pending.clear();
+                }
+            }
+            csv.flush();
+            if (failure == null && csv.checkError()) {
+                failure = new IOException("Error while writing CSV report");
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(List<String[]> batch) throws IOException {
+        for (String[] row : batch) {
+            csv.writeNext(row);
+        }
+        if (++written % ERROR_CHECK_INTERVAL == 0 && csv.checkError()) {
+            throw new IOException("Error while writing CSV report");
+        }
+        rows.addAndGet(batch.size());
+        slots.release();
+    }
+
+    /**
+     * Waits for all submitted batches to be written and closes the CSV file.
+     *
+     * @throws IOException in case writing the report failed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            queue.put(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            csv.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static class Batch {
+        final long sequence;
+        final List<String[]> rows;
+
+        Batch(long sequence, List<String[]> rows) {
+            this.sequence = sequence;
+            this.rows = rows;
+        }
+    }
+}
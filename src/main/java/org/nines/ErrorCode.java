@@ -0,0 +1,37 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+/**
+ * The kinds of errors found when validating records against {@link Schema ARC's schema}.
+ */
+public enum ErrorCode {
+    PROPERTY_REQUIRED("Property required"),
+    MORE_THAN_ONE_VALUE("More than one value"),
+    ROLE_REQUIRED("object must contain at least one role:XXX field"),
+    INVALID_ROLE("Invalid role"),
+    URI_NOT_RESOLVED("URI not resolved properly"),
+    BLANK_TEXT("Warning - blank text"),
+    GENRE_NOT_APPROVED("Genre not approved by ARC"),
+    DISCIPLINE_NOT_APPROVED("Discipline not approved by ARC"),
+    TYPE_NOT_APPROVED("Type not approved by ARC");
+
+    public final String message;
+
+    ErrorCode(String message) {
+        this.message = message;
+    }
+}
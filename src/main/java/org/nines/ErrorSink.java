@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Aggregates schema validation errors in compact form.
+ *
+ * <p>Errors are counted per file, property and {@link ErrorCode error code}, without keeping
+ * references to the RDF nodes they concern. Up to a given number of distinct errors are
+ * retained as {@link Record records} of interned IDs, whose full text is only resolved on
+ * demand. Memory use thus grows with the number of files and properties in error, not with
+ * the number of errors.</p>
+ */
+public class ErrorSink {
+
+    public static final String[] SUMMARY_HEADER = { "File", "Property", "Error", "Count" };
+
+    private static final int NO_ID = -1;
+
+    private final int recordLimit;
+    private final Interner files = new Interner();
+    private final Interner properties = new Interner();
+    private final Interner subjects = new Interner();
+    private final Interner values = new Interner();
+    private final Map<Long, LongAdder> counts = new ConcurrentHashMap<>();
+    private final Set<Record> records = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger recordCount = new AtomicInteger();
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * Creates an error sink.
+     *
+     * @param recordLimit the maximum number of distinct errors to retain in full
+     */
+    public ErrorSink(int recordLimit) {
+        this.recordLimit = recordLimit;
+    }
+
+    /**
+     * Provides a receiver for the errors in a particular file.
+     *
+     * @param file the path of the file
+     * @return a receiver adding errors to this sink
+     */
+    public SchemaValidator.Errors forFile(String file) {
+        final int fileId = files.id(file);
+        return (subject, property, value, code) -> add(fileId, subject, property, value, code);
+    }
+
+    private void add(int file, Resource subject, Property property, RDFNode value,
+                     ErrorCode code) {
+        final int propertyId = property == null ? NO_ID : properties.id(property.getURI());
+        counts.computeIfAbsent(key(file, propertyId, code), k -> new LongAdder()).increment();
+        total.increment();
+
+        if (recordCount.get() < recordLimit) {
+            final Record record = new Record(
+                file,
+                subjects.id(subject.toString()),
+                propertyId,
+                code,
+                value == null ? NO_ID : values.id(value.toString())
+            );
+            if (records.add(record)) {
+                recordCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * The number of errors added to this sink, including duplicates.
+     */
+    public long total() {
+        return total.sum();
+    }
+
+    /**
+     * Summarizes errors per file, property and error code.
+     *
+     * @return rows matching {@link #SUMMARY_HEADER}, grouped by file and property in the order
+     *     of their first error
+     */
+    public Stream<String[]> summary() {
+        return counts.entrySet().stream()
+            .sorted(Comparator.comparing(Map.Entry::getKey))
+            .map(count -> {
+                final long key = count.getKey();
+                final int propertyId = (int) ((key >>> 8) & 0xffffff) - 1;
+                return new String[] {
+                    files.string((int) (key >>> 32)),
+                    string(properties, propertyId),
+                    ErrorCode.values()[(int) (key & 0xff)].message,
+                    Long.toString(count.getValue().sum())
+                };
+            });
+    }
+
+    /**
+     * The retained distinct errors.
+     */
+    public Stream<Record> records() {
+        return records.stream();
+    }
+
+    /**
+     * Resolves the full text of an error.
+     *
+     * @param record a retained error
+     * @return the file path, subject URI, property URI, value and error message; property and
+     *     value are empty if not applicable
+     */
+    public String[] text(Record record) {
+        return new String[] {
+            files.string(record.file),
+            subjects.string(record.subject),
+            string(properties, record.property),
+            string(values, record.value),
+            record.code.message
+        };
+    }
+
+    private static String string(Interner interner, int id) {
+        return id == NO_ID ? "" : interner.string(id);
+    }
+
+    private static long key(int file, int property, ErrorCode code) {
+        return ((long) file << 32) | ((long) (property + 1) << 8) | code.ordinal();
+    }
+
+    /**
+     * An error in compact form, referring to interned strings.
+     */
+    public static final class Record {
+        public final int file;
+        public final int subject;
+        public final int property;
+        public final ErrorCode code;
+        public final int value;
+
+        Record(int file, int subject, int property, ErrorCode code, int value) {
+            this.file = file;
+            this.subject = subject;
+            this.property = property;
+            this.code = code;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Record)) {
+                return false;
+            }
+            final Record other = (Record) obj;
+            return file == other.file && subject == other.subject && property == other.property
+                && code == other.code && value == other.value;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(file, subject, property, code, value);
+        }
+    }
+}
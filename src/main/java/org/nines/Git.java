@@ -16,29 +16,111 @@
 package org.nines;
 
 import java.io.File;
-import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.logging.Logger;
-
-import static org.nines.Util.join;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.OptionalInt;
 
 /**
- * Access to a git repository via the command line tool.
+ * Access to a git repository.
+ *
+ * <p>Two backends are available: an {@link InProcessGit in-process one} based on JGit, which is
+ * used by default, and one delegating to the {@link CommandLineGit command line tool}, which can
+ * be selected via the environment variable <code>ARC_GIT_BACKEND=cli</code> or the system
+ * property <code>-Darc.git.backend=cli</code>. Both use the command line tool for network
+ * operations by default, so they authenticate the same way.</p>
+ *
+ * <p>Clones can be limited in history and contents via <code>$ARC_GIT_CLONE_DEPTH</code>/
+ * <code>-Darc.git.clone.depth</code> (e.g. <code>1</code>) and
+ * <code>$ARC_GIT_CLONE_FILTER</code>/ <code>-Darc.git.clone.filter</code>
+ * (e.g. <code>blob:none</code>).</p>
  */
-public class Git {
+public abstract class Git {
+
+    /**
+     * Available implementations of git access.
+     */
+    public enum Backend {
+        COMMAND_LINE {
+            @Override
+            public Git clone(File workspace, Arc.GitLabProject gitLabProject) {
+                return CommandLineGit.clone(workspace, gitLabProject);
+            }
+
+            @Override
+            public String remoteHead(File workspace, Arc.GitLabProject gitLabProject,
+                                     String branch) {
+                return CommandLineGit.remoteHead(workspace, gitLabProject, branch);
+            }
+        },
+        IN_PROCESS {
+            @Override
+            public Git clone(File workspace, Arc.GitLabProject gitLabProject) {
+                return InProcessGit.clone(workspace, gitLabProject);
+            }
 
-    private static final Logger LOG = Logging.forClass(Git.class);
+            @Override
+            public String remoteHead(File workspace, Arc.GitLabProject gitLabProject,
+                                     String branch) {
+                return InProcessGit.remoteHead(workspace, gitLabProject, branch);
+            }
+        };
+
+        /**
+         * Clones a GitLab project to the given workspace directory, if the target directory does
+         * not exist yet.
+         *
+         * @param workspace the workspace directory
+         * @param gitLabProject the GitLab project to clone
+         * @return an accessor for the cloned repository
+         */
+        public abstract Git clone(File workspace, Arc.GitLabProject gitLabProject);
+
+        /**
+         * Looks up the head commit of a branch in a GitLab project, without cloning it.
+         *
+         * @param workspace the workspace directory
+         * @param gitLabProject the GitLab project to query
+         * @param branch the branch name
+         * @return the commit ID or <code>null</code> if the branch does not exist
+         */
+        public abstract String remoteHead(File workspace, Arc.GitLabProject gitLabProject,
+                                          String branch);
+
+        /**
+         * Determines the configured backend.
+         *
+         * @return the backend selected via <code>$ARC_GIT_BACKEND</code>/
+         *     <code>-Darc.git.backend</code> (<code>cli</code> or <code>jgit</code>)
+         * @throws IllegalArgumentException in case of an unknown backend name
+         */
+        public static Backend configured() {
+            final String backend = Util.config("ARC_GIT_BACKEND", "arc.git.backend")
+                .orElse("jgit");
+            switch (backend.toLowerCase()) {
+                case "cli":
+                    return COMMAND_LINE;
+                case "jgit":
+                    return IN_PROCESS;
+                default:
+                    throw new IllegalArgumentException(
+                        String.format("$ARC_GIT_BACKEND/ -Darc.git.backend: %s", backend)
+                    );
+            }
+        }
+    }
+
+    /**
+     * Git commands run, by backend, command and outcome.
+     */
+    static final Metrics.Counters COMMANDS = Metrics.counters(
+        "arc_git_commands_total", "Git commands run", "backend", "command", "outcome"
+    );
 
     public final Arc.GitLabProject gitLabProject;
     public final File repository;
 
-    public Git(Arc.GitLabProject gitLabProject, File repository) {
+    protected Git(Arc.GitLabProject gitLabProject, File repository) {
         this.gitLabProject = gitLabProject;
         this.repository = repository;
     }
@@ -48,107 +130,121 @@ public class Git {
     }
 
     /**
-     * Clones a GitLab project to the given workspace directory, if the target directory does not
-     * exist yet.
+     * Clones a GitLab project to the given workspace directory via the configured backend.
      *
-     * @param workspace the workspace directory
-     * @param gitLabProject the GitLab project to clone
-     * @return an accessor for the cloned repository
+     * @see Backend#clone(File, Arc.GitLabProject)
+     * @see Backend#configured()
      */
     public static Git clone(File workspace, Arc.GitLabProject gitLabProject) {
-        final File directory = new File(workspace, gitLabProject.name);
-        if (!directory.isDirectory()) {
-            execute(workspace, "git", "clone", gitLabProject.gitUrl());
-        }
-        return new Git(gitLabProject, directory);
+        return Backend.configured().clone(workspace, gitLabProject);
     }
 
     /**
-     * Checks out a (remote) branch, optionally creating it.
+     * Clones a GitLab project to the given workspace directory via the configured backend or,
+     * if it has been cloned before, fetches its remote branches and resets <code>master</code>
+     * to its upstream head, unless it has commits which have not been pushed.
      *
-     * @param branch the branch to check out
-     * @param create <code>true</code> if the branch should be created locally
+     * @see Git#clone(File, Arc.GitLabProject)
+     * @see Git#fetch(String)
      */
-    public void checkoutBranch(String branch, boolean create) {
-        final List<String> command = new LinkedList<>(Arrays.asList("git", "checkout"));
-        if (create) {
-            command.addAll(Arrays.asList("-t", "-b"));
+    public static Git cloneOrFetch(File workspace, Arc.GitLabProject gitLabProject) {
+        final boolean existing = new File(workspace, gitLabProject.name).isDirectory();
+        final Git git = clone(workspace, gitLabProject);
+        if (existing) {
+            git.fetch("master");
         }
-        command.add(branch);
-        execute(command);
+        return git;
     }
 
-    public String reset() {
-        return execute("git", "checkout", "--", ".");
+    /**
+     * The configured history depth of clones.
+     *
+     * @return the number of commits to fetch per branch, if limited
+     */
+    public static OptionalInt cloneDepth() {
+        return Util.config("ARC_GIT_CLONE_DEPTH", "arc.git.clone.depth")
+            .map(depth -> OptionalInt.of(Integer.parseInt(depth)))
+            .orElse(OptionalInt.empty());
     }
 
-    public String status() {
-        return execute("git", "status", "--porcelain");
+    /**
+     * The configured object filter of partial clones.
+     *
+     * @return a filter specification as understood by <code>git clone --filter</code>, if any
+     */
+    public static Optional<String> cloneFilter() {
+        return Util.config("ARC_GIT_CLONE_FILTER", "arc.git.clone.filter");
     }
 
-    public String commit(String commitMessage) {
-        return execute("git", "commit", "-a", "-m", commitMessage);
-    }
+    /**
+     * Updates the remote-tracking branches of <code>origin</code> and moves a local branch to
+     * the fetched head of its upstream counterpart.
+     *
+     * <p>Local modifications of the branch are discarded, so it reflects the upstream contents
+     * to be migrated. In a working tree, the branch is checked out.</p>
+     *
+     * @param branch the branch to move
+     * @throws IllegalStateException if the branch has commits not contained in its upstream,
+     *     e.g. from a migration which has not been pushed; the branch is left as is
+     */
+    public abstract String fetch(String branch);
 
-    public String push() {
-        return execute("git", "push", "-u", "origin");
-    }
+    /**
+     * Resolves the head commit of a local branch.
+     *
+     * @param branch the branch name
+     * @return the commit ID or <code>null</code> if the branch does not exist
+     */
+    public abstract String head(String branch);
 
-    @Override
-    public String toString() {
-        return gitLabProject.toString();
-    }
+    /**
+     * Checks out a (remote) branch, optionally creating it.
+     *
+     * @param branch the branch to check out
+     * @param create <code>true</code> if the branch should be created locally
+     */
+    public abstract void checkoutBranch(String branch, boolean create);
 
-    public String execute(List<String> command) {
-        return execute(repository, command);
-    }
+    /**
+     * Discards all modifications of tracked files in the working tree.
+     */
+    public abstract String reset();
 
-    public String execute(String... command) {
-        return execute(repository, command);
-    }
+    /**
+     * Lists changes in the working tree.
+     *
+     * @return the changes in porcelain format, empty if the working tree is clean
+     */
+    public abstract String status();
+
+    /**
+     * Commits all modifications of tracked files.
+     *
+     * @param commitMessage the commit message
+     * @return a description of the created commit
+     */
+    public abstract String commit(String commitMessage);
+
+    /**
+     * Commits modifications of the given paths, without inspecting the rest of the working tree.
+     *
+     * @param commitMessage the commit message
+     * @param paths the modified paths, relative to the repository
+     * @return a description of the created commit
+     */
+    public abstract String commit(String commitMessage, Collection<Path> paths);
 
-    private static String execute(File directory, String... command) {
-        return execute(directory, Arrays.asList(command));
+    /**
+     * Converts a path relative to the repository into git's path syntax.
+     */
+    protected static String gitPath(Path path) {
+        return path.toString().replace(File.separatorChar, '/');
     }
 
-    private static String execute(File directory, List<String> command) {
-        try {
-            final Path outputLog = Files.createTempFile(Git.class.getName(), "-output.log");
-            final Path errorLog = Files.createTempFile(Git.class.getName(), "-error.log");
-            try {
-                final int exitValue = new ProcessBuilder(command)
-                        .directory(directory)
-                        .redirectError(errorLog.toFile())
-                        .redirectOutput(outputLog.toFile())
-                        .start()
-                        .waitFor();
-
-                if (exitValue != 0) {
-                    throw new RuntimeException(join("\n\n",
-                            join(": ", directory.toString(), String.join(" ", command)),
-                            String.format("Exited with value %d", exitValue),
-                            join("\n", Files.readAllLines(errorLog, Charset.defaultCharset()))
-                    ));
-                }
-
-                final String output = join("\n", Files.readAllLines(
-                    outputLog,
-                    Charset.defaultCharset()
-                ));
-                LOG.fine(() -> join("\n\n",
-                        join(": ", directory.toString(), String.join(" ", command)),
-                        output
-                ));
-
-                return output;
-            } catch (InterruptedException e) {
-                throw new IOException(e);
-            } finally {
-                Files.delete(errorLog);
-                Files.delete(outputLog);
-            }
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
+    public abstract String push();
+
+    @Override
+    public String toString() {
+        return gitLabProject.toString();
     }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of non-negative values, e.g. latencies in nanoseconds, in fixed memory.
+ *
+ * <p>Values are counted in log-linear buckets: each power of two is split into
+ * {@value #SUB_BUCKETS} buckets of equal width, so quantiles are reported with a relative error
+ * below 2% over the whole range of <code>long</code>. Recording is lock-free and may happen
+ * concurrently.</p>
+ */
+public class Histogram {
+
+    private static final int SUB_BITS = 5;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS + 1) * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Records a value; negative ones are recorded as zero.
+     */
+    public void record(long value) {
+        final long v = Math.max(0, value);
+        counts.incrementAndGet(index(v));
+        count.increment();
+        sum.add(v);
+        min.accumulateAndGet(v, Math::min);
+        max.accumulateAndGet(v, Math::max);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sum() {
+        return sum.sum();
+    }
+
+    public long min() {
+        return count() == 0 ? 0 : min.get();
+    }
+
+    public long max() {
+        return count() == 0 ? 0 : max.get();
+    }
+
+    public double mean() {
+        final long n = count();
+        return n == 0 ? 0 : (double) sum() / n;
+    }
+
+    /**
+     * Estimates a quantile.
+     *
+     * @param quantile the quantile, between 0 and 1
+     * @return the midpoint of the bucket containing the quantile, bounded by the recorded
+     *     minimum and maximum
+     */
+    public long quantile(double quantile) {
+        final long n = count();
+        if (n == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(quantile * n));
+        long seen = 0;
+        for (int bi = 0; bi < counts.length(); bi++) {
+            seen += counts.get(bi);
+            if (seen >= rank) {
+                final long width = width(bi);
+                return Math.max(min(), Math.min(max(), lowest(bi) + (width - 1) / 2));
+            }
+        }
+        return max();
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    static long lowest(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = (index >>> SUB_BITS) - 1;
+        return ((long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1)))) << shift;
+    }
+
+    private static long width(int index) {
+        return index < SUB_BUCKETS ? 1 : 1L << ((index >>> SUB_BITS) - 1);
+    }
+}
@@ -0,0 +1,578 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import org.eclipse.jgit.api.AddCommand;
+import org.eclipse.jgit.api.CreateBranchCommand;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.api.RmCommand;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.FetchResult;
+import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.nines.events.GitCommandEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.nines.Util.join;
+
+/**
+ * Access to a git repository via JGit, running in the same process.
+ *
+ * <p>In contrast to the {@link CommandLineGit command line backend}, no process is spawned per
+ * operation, and commits only stage modified paths as reported by the in-memory index instead of
+ * rescanning the working tree via <code>git commit -a</code>.</p>
+ *
+ * <p>Network operations, i.e. cloning, fetching, pushing and looking up remote heads, are
+ * delegated to the {@link CommandLineGit command line tool} by default, as JGit's core library
+ * lacks an SSH transport for the <code>git@</code> URLs of GitLab projects. With
+ * <code>$ARC_GIT_TRANSPORT=jgit</code>/ <code>-Darc.git.transport=jgit</code>, they run
+ * in-process as well, for file and HTTP(S) URLs. JGit supports neither shallow nor partial
+ * clones; if a {@link Git#cloneDepth() depth} or {@link Git#cloneFilter() filter} is configured,
+ * network operations are delegated regardless.</p>
+ */
+public class InProcessGit extends Git {
+
+    private static final Logger LOG = Logging.forClass(InProcessGit.class);
+
+    public InProcessGit(Arc.GitLabProject gitLabProject, File repository) {
+        super(gitLabProject, repository);
+    }
+
+    /**
+     * Clones a GitLab project to the given workspace directory, if the target directory does not
+     * exist yet.
+     *
+     * @param workspace the workspace directory
+     * @param gitLabProject the GitLab project to clone
+     * @return an accessor for the cloned repository
+     */
+    public static InProcessGit clone(File workspace, Arc.GitLabProject gitLabProject) {
+        final File directory = new File(workspace, gitLabProject.name);
+        if (commandLineTransport()) {
+            CommandLineGit.clone(workspace, gitLabProject, false);
+        } else if (!directory.isDirectory()) {
+            LOG.fine(() -> join(": ", workspace.toString(), "clone", gitLabProject.gitUrl()));
+            try {
+                org.eclipse.jgit.api.Git.cloneRepository()
+                    .setURI(gitLabProject.gitUrl())
+                    .setDirectory(directory)
+                    .call()
+                    .close();
+                LOG.fine(() -> join(": ", directory.toString(), "cloned"));
+            } catch (GitAPIException e) {
+                throw new RuntimeException(join(": ", directory.toString(), e.getMessage()), e);
+            }
+        }
+        return new InProcessGit(gitLabProject, directory);
+    }
+
+    /**
+     * Clones a GitLab project as a bare repository to the given workspace directory, if the
+     * target directory does not exist yet.
+     *
+     * <p>Bare repositories have no working tree; their contents can be modified via
+     * {@link #rewrite(String, Predicate, BlobRewriter, String)}. As blobs are read from the
+     * object database without any lazy fetching, a configured {@link Git#cloneFilter() filter}
+     * is ignored here.</p>
+     *
+     * @param workspace the workspace directory
+     * @param gitLabProject the GitLab project to clone
+     * @return an accessor for the cloned repository
+     */
+    public static InProcessGit cloneBare(File workspace, Arc.GitLabProject gitLabProject) {
+        final File directory = new File(workspace, gitLabProject.name + Constants.DOT_GIT_EXT);
+        if (commandLineTransport()) {
+            if (!directory.isDirectory()) {
+                final List<String> command = new ArrayList<>(Arrays.asList(
+                    "git", "clone", "--bare"
+                ));
+                cloneDepth().ifPresent(depth -> command.add(String.format("--depth=%d", depth)));
+                command.add(gitLabProject.gitUrl());
+                command.add(directory.getName());
+                CommandLineGit.execute(workspace, command);
+            }
+        } else if (!directory.isDirectory()) {
+            LOG.fine(() -> join(": ",
+                workspace.toString(), "clone --bare", gitLabProject.gitUrl()
+            ));
+            try {
+                org.eclipse.jgit.api.Git.cloneRepository()
+                    .setURI(gitLabProject.gitUrl())
+                    .setDirectory(directory)
+                    .setBare(true)
+                    .call()
+                    .close();
+                LOG.fine(() -> join(": ", directory.toString(), "cloned"));
+            } catch (GitAPIException e) {
+                throw new RuntimeException(join(": ", directory.toString(), e.getMessage()), e);
+            }
+        }
+        return new InProcessGit(gitLabProject, directory);
+    }
+
+    /**
+     * Looks up the head commit of a branch in a GitLab project via the remote protocol.
+     *
+     * @see Git.Backend#remoteHead(File, Arc.GitLabProject, String)
+     */
+    public static String remoteHead(File workspace, Arc.GitLabProject gitLabProject,
+                                    String branch) {
+        if (commandLineTransport()) {
+            return CommandLineGit.remoteHead(workspace, gitLabProject, branch);
+        }
+        try {
+            final Ref head = org.eclipse.jgit.api.Git.lsRemoteRepository()
+                .setRemote(gitLabProject.gitUrl())
+                .setHeads(true)
+                .callAsMap()
+                .get(Constants.R_HEADS + branch);
+            return head == null ? null : head.getObjectId().name();
+        } catch (GitAPIException e) {
+            throw new RuntimeException(join(": ", gitLabProject.toString(), e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Transforms the contents of blobs on a branch, committing the result directly to the object
+     * database without materializing a working tree.
+     *
+     * <p>Matching blobs are rewritten in parallel, keeping their file mode; all other entries of
+     * the branch's tree are carried over unchanged. Each blob is {@link Admission admitted} by
+     * its size before it is loaded, and holds its reservation until its rewrite has been
+     * stored.</p>
+     *
+     * @param branch the branch whose head tree is rewritten and which receives the new commit
+     * @param paths filter selecting the paths of blobs to rewrite
+     * @param rewriter the transformation of blob contents
+     * @param commitMessage the message of the commit to create
+     * @return <code>true</code> if any blob has been changed and a commit has been created
+     */
+    @SuppressWarnings("try")
+    public boolean rewrite(String branch, Predicate<String> paths, BlobRewriter rewriter,
+                           String commitMessage) {
+        return call("rewrite " + branch, git -> {
+            final Repository repo = git.getRepository();
+            final String ref = Constants.R_HEADS + branch;
+            final ObjectId head = repo.resolve(ref);
+            if (head == null) {
+                throw new IllegalArgumentException(join(": ", repository.toString(), ref));
+            }
+
+            final long walkStart = Timings.start();
+            final List<DirCacheEntry> entries = new ArrayList<>();
+            try (RevWalk revWalk = new RevWalk(repo); TreeWalk treeWalk = new TreeWalk(repo)) {
+                treeWalk.addTree(revWalk.parseCommit(head).getTree());
+                treeWalk.setRecursive(true);
+                while (treeWalk.next()) {
+                    final DirCacheEntry entry = new DirCacheEntry(treeWalk.getPathString());
+                    entry.setFileMode(treeWalk.getFileMode(0));
+                    entry.setObjectId(treeWalk.getObjectId(0));
+                    entries.add(entry);
+                }
+            }
+            Timings.record(Timings.Stage.WALK, walkStart, 0);
+
+            final Map<String, ObjectId> rewritten = new ConcurrentHashMap<>();
+            entries.parallelStream()
+                .filter(entry -> paths.test(entry.getPathString()))
+                .filter(this::isFile)
+                .forEach(entry -> {
+                    try {
+                        final ObjectLoader loader = repo.open(
+                            entry.getObjectId(), Constants.OBJ_BLOB
+                        );
+                        try (Admission.Permit permit = Admission.admit(loader.getSize())) {
+                            final byte[] content = loader.getBytes(Integer.MAX_VALUE);
+                            final byte[] result = rewriter.rewrite(entry.getPathString(), content);
+                            if (result == null || Arrays.equals(content, result)) {
+                                return;
+                            }
+                            try (ObjectInserter inserter = repo.newObjectInserter()) {
+                                rewritten.put(entry.getPathString(), inserter.insert(
+                                    Constants.OBJ_BLOB, result
+                                ));
+                                inserter.flush();
+                            }
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+
+            if (rewritten.isEmpty()) {
+                return false;
+            }
+
+            final long commitStart = Timings.start();
+            final DirCache index = DirCache.newInCore();
+            final DirCacheBuilder indexBuilder = index.builder();
+            for (DirCacheEntry entry : entries) {
+                final ObjectId blob = rewritten.get(entry.getPathString());
+                if (blob != null) {
+                    entry.setObjectId(blob);
+                }
+                indexBuilder.add(entry);
+            }
+            indexBuilder.finish();
+
+            final ObjectId commit;
+            try (ObjectInserter inserter = repo.newObjectInserter()) {
+                final PersonIdent author = new PersonIdent(repo);
+                final CommitBuilder commitBuilder = new CommitBuilder();
+                commitBuilder.setTreeId(index.writeTree(inserter));
+                commitBuilder.setParentId(head);
+                commitBuilder.setAuthor(author);
+                commitBuilder.setCommitter(author);
+                commitBuilder.setMessage(commitMessage);
+                commit = inserter.insert(commitBuilder);
+                inserter.flush();
+            }
+
+            final RefUpdate refUpdate = repo.updateRef(ref);
+            refUpdate.setExpectedOldObjectId(head);
+            refUpdate.setNewObjectId(commit);
+            refUpdate.setRefLogMessage(join(": ", "commit", commitMessage), false);
+            final RefUpdate.Result result = refUpdate.update();
+            Timings.record(Timings.Stage.COMMIT, commitStart, 0);
+            switch (result) {
+                case NEW:
+                case FAST_FORWARD:
+                    return true;
+                default:
+                    throw new IllegalStateException(join(": ", ref, result.toString()));
+            }
+        });
+    }
+
+    private boolean isFile(DirCacheEntry entry) {
+        final FileMode mode = entry.getFileMode();
+        if (FileMode.REGULAR_FILE.equals(mode) || FileMode.EXECUTABLE_FILE.equals(mode)) {
+            return true;
+        }
+        LOG.warning(() -> join(": ",
+            repository.toString(), entry.getPathString(), "not a file, skipped"
+        ));
+        return false;
+    }
+
+    /**
+     * Sums up the sizes of blobs on a branch.
+     *
+     * @param branch the branch whose head tree is inspected
+     * @param paths filter selecting the paths of blobs to include
+     * @return the total size of all selected blobs in bytes
+     */
+    public long blobSize(String branch, Predicate<String> paths) {
+        return blobSizes(branch, paths).getSum();
+    }
+
+    /**
+     * Collects the sizes of blobs on a branch.
+     *
+     * @param branch the branch whose head tree is inspected
+     * @param paths filter selecting the paths of blobs to include
+     * @return the number and sizes of all selected blobs in bytes
+     */
+    public LongSummaryStatistics blobSizes(String branch, Predicate<String> paths) {
+        return call("ls-tree -l " + branch, git -> {
+            final LongSummaryStatistics sizes = new LongSummaryStatistics();
+            final Repository repo = git.getRepository();
+            final ObjectId head = repo.resolve(Constants.R_HEADS + branch);
+            if (head == null) {
+                return sizes;
+            }
+            try (RevWalk revWalk = new RevWalk(repo); TreeWalk treeWalk = new TreeWalk(repo)) {
+                treeWalk.addTree(revWalk.parseCommit(head).getTree());
+                treeWalk.setRecursive(true);
+                while (treeWalk.next()) {
+                    if (paths.test(treeWalk.getPathString())) {
+                        sizes.accept(treeWalk.getObjectReader().getObjectSize(
+                            treeWalk.getObjectId(0), Constants.OBJ_BLOB
+                        ));
+                    }
+                }
+            }
+            return sizes;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>In a bare repository, the branch ref is updated directly; otherwise the branch is hard
+     * reset if checked out, or recreated and checked out.</p>
+     */
+    @Override
+    public String fetch(String branch) {
+        if (commandLineTransport()) {
+            return new CommandLineGit(gitLabProject, repository).fetch(branch);
+        }
+        return call("fetch origin", git -> {
+            final Repository repo = git.getRepository();
+            final FetchResult result = git.fetch()
+                .setRemote("origin")
+                .setRefSpecs(new RefSpec(CommandLineGit.REMOTE_TRACKING_REFSPEC))
+                .call();
+            final String upstream = Constants.DEFAULT_REMOTE_NAME + "/" + branch;
+            final ObjectId local = repo.resolve(Constants.R_HEADS + branch);
+            final ObjectId head = repo.resolve(Constants.R_REMOTES + upstream);
+            if (local != null && head != null) {
+                try (RevWalk revWalk = new RevWalk(repo)) {
+                    if (!revWalk.isMergedInto(revWalk.parseCommit(local),
+                        revWalk.parseCommit(head))) {
+                        throw new IllegalStateException(join(": ", repository.toString(),
+                            String.format("%s has commit(s) not in %s, push or remove them",
+                                branch, upstream)));
+                    }
+                }
+            }
+            if (repo.isBare()) {
+                if (head != null) {
+                    final RefUpdate update = repo.updateRef(Constants.R_HEADS + branch);
+                    update.setNewObjectId(head);
+                    update.setRefLogMessage(join(": ", "fetch", upstream), false);
+                    final RefUpdate.Result updated = update.forceUpdate();
+                    switch (updated) {
+                        case NEW:
+                        case NO_CHANGE:
+                        case FAST_FORWARD:
+                        case FORCED:
+                            break;
+                        default:
+                            throw new IllegalStateException(
+                                join(": ", update.getName(), updated.toString())
+                            );
+                    }
+                }
+            } else if (branch.equals(repo.getBranch())) {
+                git.reset().setMode(ResetCommand.ResetType.HARD).setRef(upstream).call();
+            } else {
+                git.checkout()
+                    .setName(branch)
+                    .setCreateBranch(true)
+                    .setForceRefUpdate(true)
+                    .setForced(true)
+                    .setUpstreamMode(CreateBranchCommand.SetupUpstreamMode.TRACK)
+                    .setStartPoint(upstream)
+                    .call();
+            }
+            return result.getMessages();
+        });
+    }
+
+    @Override
+    public String head(String branch) {
+        return call("rev-parse " + branch, git -> {
+            final ObjectId head = git.getRepository().resolve(Constants.R_HEADS + branch);
+            return head == null ? null : head.name();
+        });
+    }
+
+    @Override
+    public void checkoutBranch(String branch, boolean create) {
+        call("checkout " + branch, git -> git.checkout()
+            .setName(branch)
+            .setCreateBranch(create)
+            .setUpstreamMode(CreateBranchCommand.SetupUpstreamMode.TRACK)
+            .setStartPoint(create ? "origin/" + branch : null)
+            .call());
+    }
+
+    @Override
+    public String reset() {
+        return call("checkout -- .", git -> {
+            git.checkout().setAllPaths(true).call();
+            return "";
+        });
+    }
+
+    @Override
+    public String status() {
+        return call("status", git -> porcelain(git.status().call()));
+    }
+
+    @Override
+    public String commit(String commitMessage) {
+        return call("commit", git -> {
+            final Status status = git.status().call();
+            final Set<String> modified = status.getModified();
+            final Set<String> missing = status.getMissing();
+            if (!modified.isEmpty()) {
+                final AddCommand add = git.add();
+                modified.forEach(add::addFilepattern);
+                add.call();
+            }
+            if (!missing.isEmpty()) {
+                final RmCommand rm = git.rm().setCached(true);
+                missing.forEach(rm::addFilepattern);
+                rm.call();
+            }
+            final RevCommit commit = git.commit()
+                .setMessage(commitMessage)
+                .setAllowEmpty(false)
+                .call();
+            return join(" ", commit.getId().name(), commit.getShortMessage());
+        });
+    }
+
+    @Override
+    public String commit(String commitMessage, Collection<Path> paths) {
+        return call("commit", git -> {
+            final AddCommand add = git.add();
+            paths.stream().map(Git::gitPath).forEach(add::addFilepattern);
+            add.call();
+            final RevCommit commit = git.commit()
+                .setMessage(commitMessage)
+                .setAllowEmpty(false)
+                .call();
+            return join(" ", commit.getId().name(), commit.getShortMessage());
+        });
+    }
+
+    @Override
+    public String push() {
+        if (commandLineTransport()) {
+            return new CommandLineGit(gitLabProject, repository).push();
+        }
+        return call("push origin", git -> {
+            final List<String> messages = new ArrayList<>();
+            for (PushResult result : git.push().setRemote("origin").call()) {
+                for (RemoteRefUpdate update : result.getRemoteUpdates()) {
+                    switch (update.getStatus()) {
+                        case OK:
+                        case UP_TO_DATE:
+                            break;
+                        default:
+                            throw new RuntimeException(join("\n\n",
+                                join(": ", repository.toString(), "push origin"),
+                                join(": ", update.getRemoteName(), update.getStatus().toString(),
+                                    Objects.toString(update.getMessage(), ""))
+                            ));
+                    }
+                }
+                messages.add(result.getMessages());
+            }
+            return join("\n", messages);
+        });
+    }
+
+    private static boolean commandLineTransport() {
+        return cloneDepth().isPresent() || cloneFilter().isPresent()
+            || !Util.config("ARC_GIT_TRANSPORT", "arc.git.transport")
+                .map("jgit"::equalsIgnoreCase)
+                .orElse(false);
+    }
+
+    private static String porcelain(Status status) {
+        return Stream.of(
+            status.getAdded().stream().map(p -> "A  " + p),
+            status.getChanged().stream().map(p -> "M  " + p),
+            status.getRemoved().stream().map(p -> "D  " + p),
+            status.getModified().stream().map(p -> " M " + p),
+            status.getMissing().stream().map(p -> " D " + p),
+            status.getConflicting().stream().map(p -> "UU " + p),
+            status.getUntracked().stream().map(p -> "?? " + p)
+        ).flatMap(s -> s).collect(Collectors.joining("\n"));
+    }
+
+    private <T> T call(String description, GitCall<T> call) {
+        final GitCommandEvent event = new GitCommandEvent();
+        event.begin();
+        event.exitCode = -1;
+        try (org.eclipse.jgit.api.Git git = org.eclipse.jgit.api.Git.open(repository)) {
+            final T result = call.call(git);
+            event.exitCode = 0;
+            LOG.fine(() -> join("\n\n",
+                join(": ", repository.toString(), description),
+                String.valueOf(result)
+            ));
+            return result;
+        } catch (GitAPIException e) {
+            throw new RuntimeException(join("\n\n",
+                join(": ", repository.toString(), description),
+                e.getMessage()
+            ), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            COMMANDS.labels(
+                "jgit", description.split(" ", 2)[0], event.exitCode == 0 ? "success" : "failure"
+            ).inc();
+            event.end();
+            if (event.shouldCommit()) {
+                event.repository = repository.toString();
+                event.command = description;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * A transformation of blob contents.
+     */
+    @FunctionalInterface
+    public interface BlobRewriter {
+
+        /**
+         * Transforms the contents of a blob.
+         *
+         * @param path the path of the blob in the rewritten tree
+         * @param content the current contents
+         * @return the new contents or <code>null</code> if the blob shall remain unchanged
+         */
+        byte[] rewrite(String path, byte[] content);
+    }
+
+    @FunctionalInterface
+    private interface GitCall<T> {
+        T call(org.eclipse.jgit.api.Git git) throws GitAPIException, IOException;
+    }
+}
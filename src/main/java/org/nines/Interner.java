@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe table of strings, each identified by a dense integer ID.
+ */
+public class Interner {
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * Interns a string.
+     *
+     * @param string the string
+     * @return the ID of the string, assigned on first use
+     */
+    public int id(String string) {
+        final Integer id = ids.get(string);
+        if (id != null) {
+            return id;
+        }
+        synchronized (strings) {
+            return ids.computeIfAbsent(string, s -> {
+                strings.add(s);
+                return strings.size() - 1;
+            });
+        }
+    }
+
+    /**
+     * Resolves an ID.
+     *
+     * @param id an ID returned by {@link #id(String)}
+     * @return the interned string
+     */
+    public String string(int id) {
+        synchronized (strings) {
+            return strings.get(id);
+        }
+    }
+
+    /**
+     * The number of interned strings.
+     */
+    public int size() {
+        return ids.size();
+    }
+}
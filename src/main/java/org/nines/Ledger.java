@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Persistent record of projects processed by past migration runs.
+ *
+ * <p>For each GitLab project, the ledger stores the remote head commit a run started from and
+ * a hash of the rule set it applied. A project whose remote head and rule set are unchanged
+ * since its last completed run does not have to be cloned or migrated again.</p>
+ */
+public class Ledger {
+
+    private static final Logger LOG = Logging.forClass(Ledger.class);
+
+    public static final String FILE_NAME = ".arc-rdf-ledger.properties";
+
+    private final Path file;
+    private final Properties entries = new Properties();
+
+    /**
+     * Loads the ledger of a workspace, starting with an empty one if none exists yet.
+     *
+     * @param workspace the workspace in whose directory the ledger is kept
+     */
+    public Ledger(Workspace workspace) throws IOException {
+        this.file = workspace.directory.toPath().resolve(FILE_NAME);
+        if (Files.isRegularFile(file)) {
+            try (InputStream ledgerStream = Files.newInputStream(file)) {
+                entries.load(ledgerStream);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a project has been processed before in the given state.
+     *
+     * @param gitLabProject the project
+     * @param head the current remote head commit of the project or <code>null</code> if unknown
+     * @param ruleSetHash the hash of the rule set to apply
+     * @return <code>true</code> if the last completed run started from the same head and
+     *     applied the same rule set
+     */
+    public boolean isUpToDate(Arc.GitLabProject gitLabProject, String head, String ruleSetHash) {
+        return head != null && entry(head, ruleSetHash).equals(
+            entries.getProperty(gitLabProject.path)
+        );
+    }
+
+    /**
+     * Records a completed run for a project and persists the ledger.
+     *
+     * @param gitLabProject the project
+     * @param head the remote head commit the run started from
+     * @param ruleSetHash the hash of the applied rule set
+     */
+    public synchronized void record(Arc.GitLabProject gitLabProject, String head,
+                                    String ruleSetHash) {
+        if (head == null) {
+            return;
+        }
+        entries.setProperty(gitLabProject.path, entry(head, ruleSetHash));
+        try {
+            final Path update = Files.createTempFile(file.getParent(), FILE_NAME, ".tmp");
+            try (OutputStream ledgerStream = Files.newOutputStream(update)) {
+                entries.store(ledgerStream, "<project> = <remote head> <rule set hash>");
+            }
+            Files.move(update, file,
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        LOG.fine(() -> String.format("+ %s %s", gitLabProject, entries.get(gitLabProject.path)));
+    }
+
+    /**
+     * Computes the hash of a rule set.
+     *
+     * @param ruleSet the serialized rule set
+     * @return the hex-encoded SHA-256 digest of the given bytes
+     */
+    public static String hash(byte[] ruleSet) {
+        try {
+            final StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(ruleSet)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String entry(String head, String ruleSetHash) {
+        return String.join(" ", head, ruleSetHash);
+    }
+}
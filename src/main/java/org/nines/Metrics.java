@@ -0,0 +1,498 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Central registry of the counters, gauges and latency summaries of a run, exposed in the
+ * Prometheus text format.
+ *
+ * <p>Metrics are registered once by name, usually in static fields of the reporting class, and
+ * keyed by label values. Counters are striped, so incrementing them does not contend; gauges,
+ * externally maintained counters and summaries of {@link Histogram histograms} are read only
+ * when the metrics are exposed.</p>
+ *
+ * <p>Metrics are {@link #expose() exposed} via an HTTP listener on the loopback interface at
+ * <code>http://localhost:$ARC_METRICS_PORT/metrics</code> (<code>-Darc.metrics.port</code>)
+ * and/or a file rewritten every <code>$ARC_METRICS_INTERVAL</code>/
+ * <code>-Darc.metrics.interval</code> seconds (default: 15) at <code>$ARC_METRICS_FILE</code>/
+ * <code>-Darc.metrics.file</code>, e.g. for the node exporter's textfile collector.</p>
+ */
+public final class Metrics {
+
+    private static final Logger LOG = Logging.forClass(Metrics.class);
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private static final Map<String, Family<?>> families = new ConcurrentSkipListMap<>();
+
+    private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+        1, r -> {
+            final Thread thread = new Thread(r, "metrics");
+            thread.setDaemon(true);
+            return thread;
+        }
+    );
+
+    static {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        gauge("arc_jvm_heap_used_bytes", "Used heap memory",
+            () -> memory.getHeapMemoryUsage().getUsed());
+        gauge("arc_jvm_heap_committed_bytes", "Committed heap memory",
+            () -> memory.getHeapMemoryUsage().getCommitted());
+        gauge("arc_jvm_heap_max_bytes", "Maximum heap memory",
+            () -> memory.getHeapMemoryUsage().getMax());
+        gauge("arc_jvm_threads", "Live threads",
+            () -> ManagementFactory.getThreadMXBean().getThreadCount());
+
+        final Counters collections = counters(
+            "arc_jvm_gc_collections_total", "Garbage collections", "gc"
+        );
+        final Counters collectionTime = counters(
+            "arc_jvm_gc_milliseconds_total", "Time spent in garbage collections", "gc"
+        );
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections.register(() -> Math.max(0, gc.getCollectionCount()), gc.getName());
+            collectionTime.register(() -> Math.max(0, gc.getCollectionTime()), gc.getName());
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Registers a family of counters.
+     *
+     * @param name the metric name, conventionally ending in <code>_total</code>
+     * @param help the description of the metric
+     * @param labelNames the names of the labels distinguishing the counters
+     * @return the family, or the one registered before under the same name
+     */
+    public static Counters counters(String name, String help, String... labelNames) {
+        return register(new Counters(name, help, labelNames));
+    }
+
+    /**
+     * Registers a counter without labels.
+     */
+    public static Counter counter(String name, String help) {
+        return counters(name, help).labels();
+    }
+
+    /**
+     * Registers a family of gauges.
+     */
+    public static Gauges gauges(String name, String help, String... labelNames) {
+        return register(new Gauges(name, help, labelNames));
+    }
+
+    /**
+     * Registers a gauge without labels.
+     */
+    public static void gauge(String name, String help, DoubleSupplier value) {
+        gauges(name, help).register(value);
+    }
+
+    /**
+     * Registers a family of summaries, exposing quantiles, sum and count of histograms.
+     *
+     * @param scale the factor converting recorded values to the metric's unit, e.g.
+     *     <code>1e-9</code> for nanoseconds recorded and seconds exposed
+     */
+    public static Summaries summaries(String name, String help, double scale,
+                                      String... labelNames) {
+        return register(new Summaries(name, help, scale, labelNames));
+    }
+
+    /**
+     * Formats all metrics in the Prometheus text format.
+     */
+    public static String exposition() {
+        final StringBuilder out = new StringBuilder(4096);
+        for (Family<?> family : families.values()) {
+            family.write(out);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Exposes the metrics as configured, see {@link Metrics}.
+     *
+     * @return closes the HTTP listener and writes the metrics file a last time
+     */
+    public static Closeable expose() throws IOException {
+        final List<Closeable> exposures = new ArrayList<>();
+        final Optional<Integer> port = Util.config("ARC_METRICS_PORT", "arc.metrics.port")
+            .map(Integer::parseInt);
+        if (port.isPresent()) {
+            exposures.add(serve(port.get()));
+        }
+        final Optional<String> file = Util.config("ARC_METRICS_FILE", "arc.metrics.file");
+        if (file.isPresent()) {
+            exposures.add(writePeriodically(Paths.get(file.get()), Duration.ofSeconds(
+                Util.config("ARC_METRICS_INTERVAL", "arc.metrics.interval")
+                    .map(Long::parseLong)
+                    .orElse(15L)
+            )));
+        }
+        return () -> {
+            for (Closeable exposure : exposures) {
+                exposure.close();
+            }
+        };
+    }
+
+    /**
+     * Serves the metrics at <code>/metrics</code> on the loopback interface.
+     *
+     * @param port the port to listen on; <code>0</code> for an ephemeral one
+     * @return stops the listener
+     */
+    public static Closeable serve(int port) throws IOException {
+        final HttpServer server = HttpServer.create(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0
+        );
+        server.createContext("/metrics", exchange -> {
+            try {
+                final byte[] body = exposition().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } finally {
+                exchange.close();
+            }
+        });
+        // the dispatcher thread inherits being a daemon from the thread starting the server
+        try {
+            scheduler.submit(server::start).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        LOG.info(() -> String.format(
+            "> metrics at http://localhost:%d/metrics", server.getAddress().getPort()
+        ));
+        return () -> server.stop(0);
+    }
+
+    /**
+     * Rewrites a file with the metrics periodically, replacing it atomically.
+     *
+     * @return stops rewriting the file after writing it a last time
+     */
+    public static Closeable writePeriodically(Path path, Duration interval) {
+        final ScheduledFuture<?> writes = scheduler.scheduleAtFixedRate(() -> {
+            try {
+                write(path);
+            } catch (IOException | RuntimeException e) {
+                LOG.log(Level.WARNING, e, path::toString);
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        LOG.info(() -> String.format("> metrics in %s", path));
+        return () -> {
+            writes.cancel(false);
+            write(path);
+        };
+    }
+
+    private static synchronized void write(Path path) throws IOException {
+        final Path absolute = path.toAbsolutePath();
+        final Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        Files.write(temp, exposition().getBytes(StandardCharsets.UTF_8));
+        Files.move(
+            temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <F extends Family<?>> F register(F family) {
+        final Family<?> existing = families.putIfAbsent(family.name, family);
+        if (existing == null) {
+            return family;
+        }
+        if (existing.getClass() != family.getClass()
+            || !Arrays.equals(existing.labelNames, family.labelNames)) {
+            throw new IllegalArgumentException(String.format(
+                "%s already registered as %s%s", family.name, existing.type,
+                Arrays.toString(existing.labelNames)
+            ));
+        }
+        return (F) existing;
+    }
+
+    /**
+     * A metric with a value per combination of label values.
+     */
+    public abstract static class Family<T> {
+        final String name;
+        final String help;
+        final String type;
+        final String[] labelNames;
+        final Map<List<String>, T> children = new ConcurrentHashMap<>();
+
+        Family(String name, String help, String type, String[] labelNames) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.labelNames = labelNames.clone();
+        }
+
+        T child(String[] labelValues, Function<List<String>, T> create) {
+            return children.computeIfAbsent(key(labelValues), create);
+        }
+
+        void put(String[] labelValues, T child) {
+            children.put(key(labelValues), child);
+        }
+
+        private List<String> key(String[] labelValues) {
+            if (labelValues.length != labelNames.length) {
+                throw new IllegalArgumentException(String.format(
+                    "%s%s: %s", name, Arrays.toString(labelNames), Arrays.toString(labelValues)
+                ));
+            }
+            return Collections.unmodifiableList(Arrays.asList(labelValues.clone()));
+        }
+
+        void write(StringBuilder out) {
+            if (children.isEmpty()) {
+                return;
+            }
+            out.append("# HELP ").append(name).append(' ');
+            escape(out, help, false);
+            out.append("\n# TYPE ").append(name).append(' ').append(type).append('\n');
+            final List<Map.Entry<List<String>, T>> sorted = new ArrayList<>(children.entrySet());
+            sorted.sort(Map.Entry.comparingByKey((a, b) -> String.join("\0", a)
+                .compareTo(String.join("\0", b))));
+            for (Map.Entry<List<String>, T> child : sorted) {
+                write(out, child.getKey(), child.getValue());
+            }
+        }
+
+        abstract void write(StringBuilder out, List<String> labelValues, T child);
+
+        void sample(StringBuilder out, String suffix, List<String> labelValues, String quantile,
+                    String value) {
+            out.append(name).append(suffix);
+            if (!labelValues.isEmpty() || quantile != null) {
+                out.append('{');
+                for (int li = 0; li < labelNames.length; li++) {
+                    if (li > 0) {
+                        out.append(',');
+                    }
+                    out.append(labelNames[li]).append("=\"");
+                    escape(out, labelValues.get(li), true);
+                    out.append('"');
+                }
+                if (quantile != null) {
+                    out.append(labelNames.length > 0 ? "," : "")
+                        .append("quantile=\"").append(quantile).append('"');
+                }
+                out.append('}');
+            }
+            out.append(' ').append(value).append('\n');
+        }
+
+        private static void escape(StringBuilder out, String str, boolean quotes) {
+            for (int ci = 0; ci < str.length(); ci++) {
+                final char c = str.charAt(ci);
+                if (c == '\\') {
+                    out.append("\\\\");
+                } else if (c == '\n') {
+                    out.append("\\n");
+                } else if (c == '"' && quotes) {
+                    out.append("\\\"");
+                } else {
+                    out.append(c);
+                }
+            }
+        }
+
+        static String format(double value) {
+            if (Double.isNaN(value)) {
+                return "NaN";
+            } else if (Double.isInfinite(value)) {
+                return value > 0 ? "+Inf" : "-Inf";
+            } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+                return Long.toString((long) value);
+            }
+            return Double.toString(value);
+        }
+    }
+
+    /**
+     * A counter, incremented by the reporting code.
+     */
+    public static class Counter implements LongSupplier {
+        private final LongAdder count = new LongAdder();
+
+        public void inc() {
+            count.increment();
+        }
+
+        public void add(long amount) {
+            count.add(amount);
+        }
+
+        @Override
+        public long getAsLong() {
+            return count.sum();
+        }
+    }
+
+    /**
+     * Monotonically increasing counts.
+     */
+    public static class Counters extends Family<LongSupplier> {
+
+        Counters(String name, String help, String[] labelNames) {
+            super(name, help, "counter", labelNames);
+        }
+
+        /**
+         * The counter for the given label values, created on first use.
+         */
+        public Counter labels(String... labelValues) {
+            final LongSupplier counter = child(labelValues, k -> new Counter());
+            if (!(counter instanceof Counter)) {
+                throw new IllegalStateException(String.format(
+                    "%s%s is maintained externally", name, Arrays.toString(labelValues)
+                ));
+            }
+            return (Counter) counter;
+        }
+
+        /**
+         * Registers a count maintained elsewhere, e.g. in a {@link LongAdder}.
+         */
+        public void register(LongSupplier count, String... labelValues) {
+            put(labelValues, count);
+        }
+
+        @Override
+        void write(StringBuilder out, List<String> labelValues, LongSupplier child) {
+            sample(out, "", labelValues, null, Long.toString(child.getAsLong()));
+        }
+    }
+
+    /**
+     * Values read when the metrics are exposed.
+     */
+    public static class Gauges extends Family<DoubleSupplier> {
+
+        Gauges(String name, String help, String[] labelNames) {
+            super(name, help, "gauge", labelNames);
+        }
+
+        /**
+         * Registers the gauge for the given label values, replacing a previous one.
+         */
+        public void register(DoubleSupplier value, String... labelValues) {
+            put(labelValues, value);
+        }
+
+        @Override
+        void write(StringBuilder out, List<String> labelValues, DoubleSupplier child) {
+            sample(out, "", labelValues, null, format(child.getAsDouble()));
+        }
+    }
+
+    /**
+     * Quantiles, sum and count of distributions.
+     */
+    public static class Summaries extends Family<Supplier<Histogram>> {
+
+        private final double scale;
+
+        Summaries(String name, String help, double scale, String[] labelNames) {
+            super(name, help, "summary", labelNames);
+            this.scale = scale;
+        }
+
+        /**
+         * The histogram for the given label values, created on first use.
+         */
+        public Histogram labels(String... labelValues) {
+            return child(labelValues, k -> {
+                final Histogram histogram = new Histogram();
+                return () -> histogram;
+            }).get();
+        }
+
+        /**
+         * Registers a histogram maintained elsewhere, possibly not yet allocated.
+         */
+        public void register(Supplier<Histogram> histogram, String... labelValues) {
+            put(labelValues, histogram);
+        }
+
+        @Override
+        void write(StringBuilder out, List<String> labelValues, Supplier<Histogram> child) {
+            final Histogram histogram = child.get();
+            if (histogram == null) {
+                return;
+            }
+            for (double quantile : QUANTILES) {
+                sample(out, "", labelValues, Double.toString(quantile),
+                    format(histogram.quantile(quantile) * scale));
+            }
+            sample(out, "_sum", labelValues, null, format(histogram.sum() * scale));
+            sample(out, "_count", labelValues, null, Long.toString(histogram.count()));
+        }
+    }
+}
@@ -15,21 +15,36 @@
  */
 package org.nines;
 
+import au.com.bytecode.opencsv.CSVWriter;
 import net.middell.XML;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ResIterator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.shared.JenaException;
+import org.nines.events.FileProcessedEvent;
+import org.nines.events.RuleAppliedEvent;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.xml.sax.SAXException;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -48,16 +63,55 @@ public class Migration {
 
     private static final Logger LOG = Logging.forClass(Migration.class);
 
+    private static final Metrics.Counters FAILURES = Metrics.counters(
+        "arc_migration_failures_total", "Files failing to be formatted or migrated", "stage",
+        "exception"
+    );
+
     private static final String XML_NS = "http://www.collex.org/migration#";
 
     public static final String RULES_RESOURCE = "/migration-rules/modnets-refactoring.xml";
 
     private final String title;
     private final Rule[] rules;
+    private final RuleMetrics metrics;
+    private final LongAdder subjects = new LongAdder();
 
     public Migration(String title, Rule[] rules) {
+        this(title, rules, null);
+    }
+
+    private Migration(String title, Rule[] rules, RuleMetrics metrics) {
         this.title = title;
         this.rules = rules;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Instruments this rule set.
+     *
+     * @param sampleRate measure the time of one in <code>sampleRate</code> rule evaluations
+     * @return an equivalent rule set, counting rule applications in its {@link #metrics()}
+     */
+    public Migration instrumented(int sampleRate) {
+        final RuleMetrics ruleMetrics = new RuleMetrics(rules, sampleRate);
+        return new Migration(title, ruleMetrics.rules(), ruleMetrics);
+    }
+
+    /**
+     * The number of RDF subjects this rule set has been applied to.
+     */
+    public long subjects() {
+        return subjects.sum();
+    }
+
+    /**
+     * The metrics of an {@link #instrumented(int) instrumented} rule set.
+     *
+     * @return the metrics or <code>null</code> if this rule set is not instrumented
+     */
+    public RuleMetrics metrics() {
+        return metrics;
     }
 
     @Override
@@ -118,22 +172,67 @@ public class Migration {
      * @return <code>true</code> if the model has been changed by this rule set
      */
     public boolean apply(Model model, RdfXmlDocument xml) {
+        return apply(model, xml, null, null);
+    }
+
+    /**
+     * Applies this rule set to a RDF model, validating its subjects along the way.
+     *
+     * @param model the RDF model
+     * @param xml the model as expressed in its source RDF/XML
+     * @param validator the validator appropriate for the model's subjects
+     * @param validation receives the effects of each applied rule on the validity of subjects;
+     *     <code>null</code> if subjects shall not be validated
+     * @return <code>true</code> if the model has been changed by this rule set
+     * @see MigrationValidation
+     */
+    public boolean apply(Model model, RdfXmlDocument xml, SchemaValidator validator,
+                         MigrationValidation validation) {
         boolean modelChanged = false;
         for (final ResIterator it = model.listSubjects(); it.hasNext(); ) {
             final Resource subject = it.next();
-            for (Rule rule : rules) {
-                final boolean applied = rule.apply(subject, xml);
+            subjects.increment();
+            final MigrationValidation.Subject validated = validation == null || subject.isAnon()
+                ? null
+                : validation.subject(validator, subject);
+            for (int ri = 0; ri < rules.length; ri++) {
+                final Rule rule = rules[ri];
+                final RuleAppliedEvent event = new RuleAppliedEvent();
+                event.begin();
+                final boolean applied = metrics == null
+                    ? rule.apply(subject, xml)
+                    : metrics.apply(ri, subject, xml);
                 if (applied) {
                     LOG.finer(() -> String.format("! %s (%s)", subject, rule));
                     modelChanged = true;
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.rule = ri + 1;
+                        event.subject = subject.toString();
+                        event.commit();
+                    }
+                    if (validated != null) {
+                        validated.applied(ri);
+                    }
                 } else {
                     LOG.finest(() -> String.format(". %s (%s)", subject, rule));
                 }
             }
+            if (validated != null) {
+                validated.end();
+            }
         }
         return modelChanged;
     }
 
+    /**
+     * Creates an accumulator for the effects of this rule set on the validity of migrated
+     * subjects.
+     */
+    public MigrationValidation validation() {
+        return new MigrationValidation(Stream.of(rules).map(Rule::toString).toArray(String[]::new));
+    }
+
     /**
      * Applies this rule set to a RDF model contained in a RDF/XML file.
      *
@@ -145,12 +244,135 @@ public class Migration {
         return apply(rdf, new RdfXmlDocument(rdf), RdfXmlDocument.model(rdf));
     }
 
-    public boolean apply(File rdf, RdfXmlDocument xml, Model model) throws TransformerException {
-        if (apply(model, xml)) {
-            xml.write(rdf);
-            return true;
+    /**
+     * Applies this rule set to a RDF model contained in a RDF/XML file, validating its
+     * subjects along the way.
+     *
+     * @see Migration#apply(Model, RdfXmlDocument, SchemaValidator, MigrationValidation)
+     */
+    public boolean apply(File rdf, SchemaValidator validator, MigrationValidation validation)
+        throws IOException, SAXException, TransformerException, JenaException {
+
+        final FileProcessedEvent event = new FileProcessedEvent();
+        event.begin();
+
+        try (Accounting.FileAccount account = Accounting.file(
+            Timings.currentProject(), rdf.getPath(), rdf.length()
+        )) {
+            account.begin();
+            long start = Timings.start();
+            final RdfXmlDocument xml = new RdfXmlDocument(rdf);
+            event.domParse = Timings.record(Timings.Stage.DOM_PARSE, start, rdf.length());
+
+            start = Timings.start();
+            final Model model = RdfXmlDocument.model(rdf);
+            event.rdfParse = Timings.record(Timings.Stage.RDF_PARSE, start, rdf.length());
+            account.end(Accounting.Phase.PARSE);
+
+            account.begin();
+            start = Timings.start();
+            final boolean changed = apply(model, xml, validator, validation);
+            event.rules = Timings.record(Timings.Stage.RULES, start, 0);
+            account.end(Accounting.Phase.MIGRATE);
+
+            boolean written = false;
+            if (changed) {
+                account.begin();
+                start = Timings.start();
+                written = xml.write(rdf);
+                event.serialize = Timings.record(Timings.Stage.SERIALIZE, start, rdf.length());
+                account.end(Accounting.Phase.WRITE);
+            }
+
+            commit(event, rdf.getPath(), rdf.length(), model, written);
+            return written;
+        }
+    }
+
+    /**
+     * Applies this rule set to a RDF model, writing the modified RDF/XML back to its file.
+     *
+     * @return <code>true</code> if the model has been changed and the file has been written
+     * @see Migration#apply(Model, RdfXmlDocument)
+     * @see RdfXmlDocument#write(File)
+     */
+    public boolean apply(File rdf, RdfXmlDocument xml, Model model)
+        throws TransformerException, IOException {
+        return apply(model, xml) && xml.write(rdf);
+    }
+
+    /**
+     * Applies this rule set to a RDF model contained in RDF/XML held in memory.
+     *
+     * @param rdf the RDF/XML source
+     * @param base the base URI against which relative URIs are resolved
+     * @return the migrated RDF/XML or <code>null</code> if the model has not been changed
+     * @see Migration#apply(Model, RdfXmlDocument)
+     */
+    public byte[] apply(byte[] rdf, String base)
+        throws IOException, SAXException, TransformerException, JenaException {
+
+        return apply(rdf, base, null, null);
+    }
+
+    /**
+     * Applies this rule set to a RDF model contained in RDF/XML held in memory, validating its
+     * subjects along the way.
+     *
+     * @see Migration#apply(byte[], String)
+     * @see Migration#apply(Model, RdfXmlDocument, SchemaValidator, MigrationValidation)
+     */
+    public byte[] apply(byte[] rdf, String base, SchemaValidator validator,
+                        MigrationValidation validation)
+        throws IOException, SAXException, TransformerException, JenaException {
+
+        final FileProcessedEvent event = new FileProcessedEvent();
+        event.begin();
+
+        try (Accounting.FileAccount account = Accounting.file(
+            Timings.currentProject(), base, rdf.length
+        )) {
+            account.begin();
+            long start = Timings.start();
+            final RdfXmlDocument xml = new RdfXmlDocument(new ByteArrayInputStream(rdf), base);
+            event.domParse = Timings.record(Timings.Stage.DOM_PARSE, start, rdf.length);
+
+            start = Timings.start();
+            final Model model = RdfXmlDocument.model(new ByteArrayInputStream(rdf), base);
+            event.rdfParse = Timings.record(Timings.Stage.RDF_PARSE, start, rdf.length);
+            account.end(Accounting.Phase.PARSE);
+
+            account.begin();
+            start = Timings.start();
+            final boolean changed = apply(model, xml, validator, validation);
+            event.rules = Timings.record(Timings.Stage.RULES, start, 0);
+            account.end(Accounting.Phase.MIGRATE);
+
+            byte[] result = null;
+            if (changed) {
+                account.begin();
+                start = Timings.start();
+                result = xml.toByteArray();
+                event.serialize = Timings.record(Timings.Stage.SERIALIZE, start, result.length);
+                account.end(Accounting.Phase.WRITE);
+            }
+
+            commit(event, base, rdf.length, model, changed);
+            return result;
+        }
+    }
+
+    private static void commit(FileProcessedEvent event, String path, long bytes, Model model,
+                               boolean changed) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = "migrate";
+            event.path = path;
+            event.bytes = bytes;
+            event.subjects = model.listSubjects().toList().size();
+            event.changed = changed;
+            event.commit();
         }
-        return false;
     }
 
     /**
@@ -159,6 +381,46 @@ public class Migration {
      * <p>A migration rule set is read from the classpath and applied to
      * all RDF/XML sources contained in ARC's GitLab, optionally limited to some projects.
      *
+     * <p>With <code>$ARC_MIGRATION_MODE=bare</code>/ <code>-Darc.migration.mode=bare</code>,
+     * projects are cloned as bare repositories and migrated directly in git's object database,
+     * without ever checking out a working tree.</p>
+     *
+     * <p>Projects whose remote head and rule set are unchanged since their last completed run
+     * according to the workspace's {@link Ledger ledger} are skipped, unless
+     * <code>$ARC_MIGRATION_FORCE=true</code>/ <code>-Darc.migration.force=true</code>. Runs in
+     * which any file of a project failed are not recorded.
+     * Projects of at most <code>$ARC_MIGRATION_MIN_PROJECT_SIZE</code>/
+     * <code>-Darc.migration.min.project.size</code> bytes of RDF/XML (default: 1 GiB) are
+     * skipped as well.</p>
+     *
+     * <p>With <code>$ARC_MIGRATION_VALIDATE</code>/ <code>-Darc.migration.validate</code> set to
+     * the path of a CSV file, migrated records are {@link MigrationValidation validated} in
+     * memory and the changes in schema errors per rule are reported to that file.</p>
+     *
+     * <p>With <code>$ARC_MIGRATION_METRICS</code>/ <code>-Darc.migration.metrics</code> set to
+     * the path of a CSV file, the rule set is {@link RuleMetrics instrumented}; its counters are
+     * logged as a table and written to that file. The time spent per rule is measured for one
+     * in <code>$ARC_MIGRATION_METRICS_SAMPLE</code>/ <code>-Darc.migration.metrics.sample</code>
+     * (default: 100) evaluations.</p>
+     *
+     * <p>Latency distributions of all stages are {@link Timings recorded} and logged at the end,
+     * every <code>$ARC_TIMINGS_INTERVAL</code>/ <code>-Darc.timings.interval</code> seconds
+     * (default: 300, 0 to disable) in between and per project at log level <code>FINE</code>.
+     * With <code>$ARC_TIMINGS_REPORT</code>/ <code>-Darc.timings.report</code> set to the path
+     * of a CSV file, the overall and per-project distributions are written to that file.</p>
+     *
+     * <p>{@link Progress} is logged every <code>$ARC_PROGRESS_INTERVAL</code>/
+     * <code>-Darc.progress.interval</code> seconds (default: 60).</p>
+     *
+     * <p>With <code>$ARC_ACCOUNTING=true</code>/ <code>-Darc.accounting=true</code>, memory
+     * allocation and CPU time per file and phase are {@link Accounting accounted} for.</p>
+     *
+     * <p>Files are {@link Admission admitted} to parsing within a heap budget, so large files
+     * are processed with less concurrency.</p>
+     *
+     * <p>{@link Metrics} are exposed via <code>$ARC_METRICS_PORT</code> and/or
+     * <code>$ARC_METRICS_FILE</code>.</p>
+     *
      * @see Migration#parse(Document)
      * @see Arc#rdfRepositories()
      * @see Migration#apply(File)
@@ -168,56 +430,357 @@ public class Migration {
 
         Logging.configure();
         final Logger log = Logging.forClass(Migration.class);
+        final Closeable exposition = Metrics.expose();
+
+        try {
+            final byte[] rules;
+            try (InputStream rulesStream = Migration.class.getResourceAsStream(RULES_RESOURCE)) {
+                rules = Util.toByteArray(rulesStream);
+            }
+            final Document migrationXml = XML.newDocumentBuilder().parse(
+                new ByteArrayInputStream(rules)
+            );
+
+            final Optional<String> metricsReport = Util.config(
+                "ARC_MIGRATION_METRICS", "arc.migration.metrics"
+            );
+            final Migration parsed = Migration.parse(migrationXml);
+            final Migration migration = metricsReport.isPresent()
+                ? parsed.instrumented(Util.config(
+                    "ARC_MIGRATION_METRICS_SAMPLE", "arc.migration.metrics.sample"
+                ).map(Integer::parseInt).orElse(100))
+                : parsed;
+            log.fine(() -> String.format("< %s", migration));
+
+            final Arc arc = new Arc();
+            final Workspace workspace = new Workspace(arc);
+            final LedgerFilter ledgerFilter = new LedgerFilter(workspace, Ledger.hash(rules));
+            final Optional<String> validationReport = Util.config(
+                "ARC_MIGRATION_VALIDATE", "arc.migration.validate"
+            );
+            final MigrationValidation validation = validationReport.isPresent()
+                ? migration.validation()
+                : null;
+
+            final long timingsInterval = Util.config("ARC_TIMINGS_INTERVAL", "arc.timings.interval")
+                .map(Long::parseLong)
+                .orElse(300L);
+            final ScheduledFuture<?> periodicTimings = timingsInterval > 0
+                ? Timings.logPeriodically(Duration.ofSeconds(timingsInterval))
+                : null;
+
+            final Arc.GitLabProject[] gitLabProjects = arc.rdfRepositories();
+            final Progress progress = Progress.configured("migration", migration::subjects);
+            progress.expectProjects(gitLabProjects.length);
+
+            if (bareMode()) {
+                migrateBare(workspace, gitLabProjects, migration, ledgerFilter, validation,
+                    progress);
+            } else {
+                migrate(workspace, gitLabProjects, migration, ledgerFilter, validation, progress);
+            }
+
+            if (validation != null) {
+                try (CSVWriter csv = new CSVWriter(Files.newBufferedWriter(
+                    Paths.get(validationReport.get()), StandardCharsets.UTF_8
+                ))) {
+                    csv.writeNext(MigrationValidation.CSV_HEADER);
+                    validation.report().forEach(csv::writeNext);
+                }
+                log.info(() -> String.format(
+                    "! %d -> %d schema error(s), see %s",
+                    validation.errorsBefore(), validation.errorsAfter(), validationReport.get()
+                ));
+            }
+
+            if (migration.metrics() != null) {
+                final RuleMetrics metrics = migration.metrics();
+                try (CSVWriter csv = new CSVWriter(Files.newBufferedWriter(
+                    Paths.get(metricsReport.get()), StandardCharsets.UTF_8
+                ))) {
+                    csv.writeNext(RuleMetrics.CSV_HEADER);
+                    metrics.report().forEach(csv::writeNext);
+                }
+                log.info(() -> String.format("! rule metrics, see %s\n%s",
+                    metricsReport.get(), metrics.table()));
+            }
 
-        Document migrationXml;
-        try (InputStream rulesStream = Migration.class.getResourceAsStream(RULES_RESOURCE)) {
-            migrationXml = XML.newDocumentBuilder().parse(rulesStream);
+            progress.close();
+            if (Accounting.enabled()) {
+                Accounting.writeReport(log);
+            }
+            if (periodicTimings != null) {
+                periodicTimings.cancel(false);
+            }
+            final Optional<String> timingsReport = Util.config(
+                "ARC_TIMINGS_REPORT", "arc.timings.report"
+            );
+            if (timingsReport.isPresent()) {
+                try (CSVWriter csv = new CSVWriter(Files.newBufferedWriter(
+                    Paths.get(timingsReport.get()), StandardCharsets.UTF_8
+                ))) {
+                    csv.writeNext(Timings.CSV_HEADER);
+                    Timings.report().forEach(csv::writeNext);
+                }
+            }
+            log.info(() -> String.format("! timings\n%s", Timings.table()));
+        } finally {
+            exposition.close();
         }
 
-        final Migration migration = Migration.parse(migrationXml);
-        log.fine(() -> String.format("< %s", migration));
+        final long end = System.currentTimeMillis();
+        log.info(() -> String.format(". %s", Duration.ofMillis(end - start)));
+    }
 
-        new Workspace(new Arc()).projects()
-            .filter(projectFilter())
+    @SuppressWarnings("try")
+    private static void migrate(Workspace workspace, Arc.GitLabProject[] gitLabProjects,
+                                Migration migration, LedgerFilter ledgerFilter,
+                                MigrationValidation validation, Progress progress)
+        throws IOException {
+        final Logger log = Logging.forClass(Migration.class);
+        workspace.updatedProjects(gitLabProjects, progress.skipping(ledgerFilter))
+            .filter(progress.skipping(projectFilter()))
             .parallel()
             .forEach(rdfProject -> {
+                final String project = rdfProject.git.gitLabProject.name;
+                final LongAdder failures = new LongAdder();
+                final String head;
+                try (Timings.Scope scope = Timings.project(project)) {
+                    long start = Timings.start();
+                    rdfProject.reset();
+                    rdfProject.withBranch("master", false);
+                    head = rdfProject.git.head("master");
+                    Timings.record(Timings.Stage.CHECKOUT, start, 0);
+
+                    start = Timings.start();
+                    final List<File> rdfFiles = rdfProject.rdfFiles().collect(Collectors.toList());
+                    Timings.record(Timings.Stage.WALK, start, 0);
+                    progress.inventory(project, rdfFiles);
+
+                    rdfFiles.parallelStream().forEach(rdfFile -> {
+                        try (
+                            Timings.Scope fileScope = Timings.project(project);
+                            Admission.Permit permit = Admission.admit(rdfFile.length())
+                        ) {
+                            final long formatStart = Timings.start();
+                            if (RdfXmlDocument.format(rdfFile)) {
+                                rdfProject.changed(rdfFile);
+                            }
+                            Timings.record(Timings.Stage.FORMAT, formatStart, rdfFile.length());
+                        } catch (IOException | SAXException | TransformerException e) {
+                            failed("format", e);
+                            failures.increment();
+                            log.log(Level.WARNING, e, rdfFile::toString);
+                        }
 
-                rdfProject.reset();
-                rdfProject.withBranch("master", false);
+                    });
+                    start = Timings.start();
+                    rdfProject.commitIfChanged(join(" | ", migration.title, "RDF/XML formatting"));
+                    Timings.record(Timings.Stage.COMMIT, start, 0);
+
+                    final SchemaValidator validator = SchemaValidator.forProject(rdfProject);
+                    rdfFiles.parallelStream().forEach(rdfFile -> {
+                        try (
+                            Timings.Scope fileScope = Timings.project(project);
+                            Admission.Permit permit = Admission.admit(rdfFile.length())
+                        ) {
+                            log.fine(() -> String.format("? %s", rdfFile.getAbsolutePath()));
+                            if (migration.apply(rdfFile, validator, validation)) {
+                                rdfProject.changed(rdfFile);
+                                log.info(() -> String.format("! %s", rdfFile.getAbsolutePath()));
+                            }
+                        } catch (IOException | SAXException | TransformerException
+                            | JenaException e) {
+                            failed("migrate", e);
+                            failures.increment();
+                            log.log(Level.WARNING, e, rdfFile::toString);
+                        }
+                        progress.processed(project, rdfFile.length());
+                    });
 
-                rdfProject.rdfFiles().parallel().forEach(rdfFile -> {
-                    try {
-                        RdfXmlDocument.format(rdfFile);
-                    } catch (IOException | SAXException | TransformerException e) {
-                        log.log(Level.WARNING, e, rdfFile::toString);
+                    start = Timings.start();
+                    if (rdfProject.commitIfChanged(join(" | ", migration.title, "RDF migration"))) {
+                        //rdfProject.push();
+                        log.info(() -> String.format("! %s", rdfProject));
                     }
+                    Timings.record(Timings.Stage.COMMIT, start, 0);
+                }
+                Timings.completed(project);
+                progress.completed(project);
+                ledgerFilter.completed(rdfProject.git.gitLabProject, head, failures.sum());
+            });
+    }
 
-                });
-                rdfProject.commitIfChanged(join(" | ", migration.title, "RDF/XML formatting"));
+    @SuppressWarnings("try")
+    private static void migrateBare(Workspace workspace, Arc.GitLabProject[] gitLabProjects,
+                                    Migration migration, LedgerFilter ledgerFilter,
+                                    MigrationValidation validation, Progress progress)
+        throws IOException {
+        final Logger log = Logging.forClass(Migration.class);
+        // the sizes of RDF/XML blobs, taken by the size filter and reused as inventory
+        final Map<String, LongSummaryStatistics> inventories = new ConcurrentHashMap<>();
+        workspace.bareRepositories(gitLabProjects, progress.skipping(ledgerFilter))
+            .filter(progress.skipping(git -> {
+                final LongSummaryStatistics inventory = git.blobSizes(
+                    "master", RdfProject::isRdfFile
+                );
+                if (!largeEnough(git.gitLabProject, inventory.getSum())) {
+                    return false;
+                }
+                inventories.put(git.gitLabProject.name, inventory);
+                return true;
+            }))
+            .parallel()
+            .forEach(git -> {
+                final String project = git.gitLabProject.name;
+                final File workTree = new File(workspace.directory, project);
+                final SchemaValidator validator = SchemaValidator.forProject(git.gitLabProject);
+                final LongSummaryStatistics inventory = inventories.remove(project);
+                progress.inventory(project, inventory.getCount(), inventory.getSum());
+                final LongAdder failures = new LongAdder();
+                final String head = git.head("master");
+
+                final InProcessGit.BlobRewriter formatting = (path, rdf) -> {
+                    try (Timings.Scope scope = Timings.project(project)) {
+                        final long start = Timings.start();
+                        final String base = new File(workTree, path).toURI().toString();
+                        final byte[] result = RdfXmlDocument.format(rdf, base);
+                        Timings.record(Timings.Stage.FORMAT, start, rdf.length);
+                        return result;
+                    } catch (IOException | SAXException | TransformerException e) {
+                        failed("format", e);
+                        failures.increment();
+                        log.log(Level.WARNING, e, () -> join(": ", git.toString(), path));
+                        return null;
+                    }
+                };
+                try (Timings.Scope scope = Timings.project(project)) {
+                    git.rewrite("master", RdfProject::isRdfFile, formatting,
+                        join(" | ", migration.title, "RDF/XML formatting"));
+                }
 
-                rdfProject.rdfFiles().parallel().forEach(rdfFile -> {
-                    try {
-                        log.fine(() -> String.format("? %s", rdfFile.getAbsolutePath()));
-                        if (migration.apply(rdfFile)) {
-                            log.info(() -> String.format("! %s", rdfFile.getAbsolutePath()));
+                final InProcessGit.BlobRewriter migrating = (path, rdf) -> {
+                    try (Timings.Scope scope = Timings.project(project)) {
+                        log.fine(() -> String.format("? %s", join(": ", git.toString(), path)));
+                        final String base = new File(workTree, path).toURI().toString();
+                        final byte[] result = migration.apply(rdf, base, validator, validation);
+                        if (result != null) {
+                            log.info(() -> String.format("! %s", join(": ", git.toString(), path)));
                         }
+                        return result;
                     } catch (IOException | SAXException | TransformerException | JenaException e) {
-                        log.log(Level.WARNING, e, rdfFile::toString);
+                        failed("migrate", e);
+                        failures.increment();
+                        log.log(Level.WARNING, e, () -> join(": ", git.toString(), path));
+                        return null;
+                    } finally {
+                        progress.processed(project, rdf.length);
+                    }
+                };
+                try (Timings.Scope scope = Timings.project(project)) {
+                    if (git.rewrite("master", RdfProject::isRdfFile, migrating,
+                        join(" | ", migration.title, "RDF migration"))) {
+                        log.info(() -> String.format("! %s", git));
                     }
-                });
-                
-                if (rdfProject.commitIfChanged(join(" | ", migration.title, "RDF migration"))) {
-                    //rdfProject.push();
-                    log.info(() -> String.format("! %s", rdfProject));
                 }
+                Timings.completed(project);
+                progress.completed(project);
+                ledgerFilter.completed(git.gitLabProject, head, failures.sum());
             });
+    }
 
-        final long end = System.currentTimeMillis();
-        log.info(() -> String.format(". %s", Duration.ofMillis(end - start)));
+    private static void failed(String stage, Exception e) {
+        FAILURES.labels(stage, e.getClass().getSimpleName()).inc();
+    }
+
+    /**
+     * Selects projects which are not up-to-date according to the workspace's ledger, and records
+     * completed runs.
+     */
+    private static class LedgerFilter implements Predicate<Arc.GitLabProject> {
+
+        private final Workspace workspace;
+        private final Ledger ledger;
+        private final String ruleSetHash;
+        private final boolean force;
+
+        LedgerFilter(Workspace workspace, String ruleSetHash) throws IOException {
+            this.workspace = workspace;
+            this.ledger = new Ledger(workspace);
+            this.ruleSetHash = ruleSetHash;
+            this.force = Util.config("ARC_MIGRATION_FORCE", "arc.migration.force")
+                .map(Boolean::parseBoolean)
+                .orElse(false);
+        }
+
+        @Override
+        public boolean test(Arc.GitLabProject gitLabProject) {
+            final String head;
+            try {
+                head = Git.Backend.configured().remoteHead(
+                    workspace.directory, gitLabProject, "master"
+                );
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, e, gitLabProject::toString);
+                return true;
+            }
+            if (head == null) {
+                return true;
+            }
+            if (!force && ledger.isUpToDate(gitLabProject, head, ruleSetHash)) {
+                LOG.fine(() -> String.format("= %s %s", gitLabProject, head));
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Records the run of a project, unless any of its files failed to be processed.
+         *
+         * @param gitLabProject the project
+         * @param head the fetched head commit the run started from
+         * @param failures the number of files which failed to be processed
+         */
+        void completed(Arc.GitLabProject gitLabProject, String head, long failures) {
+            if (failures > 0) {
+                LOG.warning(() -> String.format(
+                    "~ %s: %d file(s) failed, not recorded in ledger", gitLabProject, failures
+                ));
+                return;
+            }
+            ledger.record(gitLabProject, head, ruleSetHash);
+        }
+    }
+
+    private static boolean bareMode() {
+        return Util.config("ARC_MIGRATION_MODE", "arc.migration.mode")
+            .map("bare"::equalsIgnoreCase)
+            .orElse(false);
     }
 
     private static Predicate<RdfProject> projectFilter() {
-        return p -> p.rdfFiles().collect(Collectors.summingLong(File::length)) > ONE_GIGABYTE;
+        return p -> largeEnough(
+            p.git.gitLabProject, p.rdfFiles().collect(Collectors.summingLong(File::length))
+        );
+    }
+
+    /**
+     * Applies the project size filter, completing the timings of rejected projects, as their
+     * clones have been recorded already.
+     */
+    private static boolean largeEnough(Arc.GitLabProject gitLabProject, long size) {
+        if (projectSizeFilter().test(size)) {
+            return true;
+        }
+        Timings.completed(gitLabProject.name);
+        return false;
+    }
+
+    private static LongPredicate projectSizeFilter() {
+        final long minSize = Util.config(
+            "ARC_MIGRATION_MIN_PROJECT_SIZE", "arc.migration.min.project.size"
+        ).map(Long::parseLong).orElse((long) ONE_GIGABYTE);
+        return size -> size > minSize;
     }
 
     /*
@@ -0,0 +1,181 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import org.apache.jena.rdf.model.Resource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Schema validation of records while they are being migrated.
+ *
+ * <p>Each subject is validated before the first and after each applied rule of a rule set,
+ * on the model already held in memory for the migration. Changes in the number of errors are
+ * attributed to the rule just applied and accumulated per rule and {@link ErrorCode error
+ * code}, so the effect of a migration on the corpus' validity is known without parsing it
+ * again.</p>
+ */
+public class MigrationValidation {
+
+    public static final String[] CSV_HEADER = { "Rule", "Error", "Fixed", "Introduced" };
+
+    private static final int CODES = ErrorCode.values().length;
+
+    private final String[] rules;
+    private final LongAdder[] before = adders(CODES);
+    private final LongAdder[] after = adders(CODES);
+    private final LongAdder[] fixed;
+    private final LongAdder[] introduced;
+
+    /**
+     * Creates an accumulator for the effects of a rule set.
+     *
+     * @param rules descriptions of the rules, in the order of their application
+     */
+    public MigrationValidation(String[] rules) {
+        this.rules = rules;
+        this.fixed = adders(rules.length * CODES);
+        this.introduced = adders(rules.length * CODES);
+    }
+
+    /**
+     * Starts tracking a subject about to be migrated.
+     *
+     * @param validator the validator appropriate for the subject
+     * @param subject the subject, not yet migrated
+     * @return the tracker, to be notified of applied rules
+     */
+    public Subject subject(SchemaValidator validator, Resource subject) {
+        return new Subject(validator, subject);
+    }
+
+    /**
+     * Tracks the errors of one subject throughout its migration.
+     */
+    public class Subject {
+
+        private final SchemaValidator validator;
+        private final Resource subject;
+        private int[] errors;
+
+        private Subject(SchemaValidator validator, Resource subject) {
+            this.validator = validator;
+            this.subject = subject;
+            this.errors = count();
+            add(before, errors);
+        }
+
+        /**
+         * Revalidates the subject after a rule changed it.
+         *
+         * @param rule the index of the applied rule
+         */
+        public void applied(int rule) {
+            final int[] current = count();
+            for (int ci = 0; ci < CODES; ci++) {
+                final int delta = current[ci] - errors[ci];
+                if (delta < 0) {
+                    fixed[rule * CODES + ci].add(-delta);
+                } else if (delta > 0) {
+                    introduced[rule * CODES + ci].add(delta);
+                }
+            }
+            errors = current;
+        }
+
+        /**
+         * Completes the tracking after all rules have been applied.
+         */
+        public void end() {
+            add(after, errors);
+        }
+
+        private int[] count() {
+            final int[] counts = new int[CODES];
+            validator.validate(subject, (s, p, v, code) -> counts[code.ordinal()]++);
+            return counts;
+        }
+    }
+
+    /**
+     * The total number of errors of all tracked subjects before their migration.
+     */
+    public long errorsBefore() {
+        return sum(before);
+    }
+
+    /**
+     * The total number of errors of all tracked subjects after their migration.
+     */
+    public long errorsAfter() {
+        return sum(after);
+    }
+
+    /**
+     * Reports the changes in errors per rule and error code.
+     *
+     * @return rows matching {@link #CSV_HEADER} for all combinations with changes, followed by
+     *     totals per error code, whose fixed/introduced columns give the number of errors
+     *     before/after migration
+     */
+    public Stream<String[]> report() {
+        final List<String[]> rows = new ArrayList<>();
+        for (int ri = 0; ri < rules.length; ri++) {
+            for (int ci = 0; ci < CODES; ci++) {
+                final long ruleFixed = fixed[ri * CODES + ci].sum();
+                final long ruleIntroduced = introduced[ri * CODES + ci].sum();
+                if (ruleFixed > 0 || ruleIntroduced > 0) {
+                    rows.add(new String[] {
+                        rules[ri],
+                        ErrorCode.values()[ci].message,
+                        Long.toString(ruleFixed),
+                        Long.toString(ruleIntroduced)
+                    });
+                }
+            }
+        }
+        for (int ci = 0; ci < CODES; ci++) {
+            rows.add(new String[] {
+                "(total before/after)",
+                ErrorCode.values()[ci].message,
+                Long.toString(before[ci].sum()),
+                Long.toString(after[ci].sum())
+            });
+        }
+        return rows.stream();
+    }
+
+    private static void add(LongAdder[] adders, int[] counts) {
+        for (int ci = 0; ci < counts.length; ci++) {
+            adders[ci].add(counts[ci]);
+        }
+    }
+
+    private static long sum(LongAdder[] adders) {
+        return Stream.of(adders).mapToLong(LongAdder::sum).sum();
+    }
+
+    private static LongAdder[] adders(int size) {
+        final LongAdder[] adders = new LongAdder[size];
+        for (int ai = 0; ai < size; ai++) {
+            adders[ai] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import java.io.Closeable;
+import java.io.File;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Progress of a run over the projects and files of a workspace.
+ *
+ * <p>The number of projects is known up front; the files of a project become known once it
+ * has been cloned and its {@link #inventory(String, Collection) inventory} taken. Workers
+ * report each {@link #processed(String, long) processed} file; counters are striped, so
+ * reporting does not contend. Periodically, the overall and per-project completion, the
+ * throughput in files, bytes and subjects per second and the estimated time remaining are
+ * logged. Projects whose inventory is still unknown are estimated by the average size of the
+ * known ones.</p>
+ */
+public class Progress implements Closeable {
+
+    private static final Logger LOG = Logging.forClass(Progress.class);
+
+    private final String name;
+    private final long started = System.nanoTime();
+    private final AtomicInteger expectedProjects = new AtomicInteger();
+    private final AtomicInteger skippedProjects = new AtomicInteger();
+    private final AtomicInteger knownProjects = new AtomicInteger();
+    private final AtomicInteger completedProjects = new AtomicInteger();
+    private final LongAdder totalFiles = new LongAdder();
+    private final LongAdder totalBytes = new LongAdder();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongSupplier subjects;
+    private final Map<String, Project> projects = new ConcurrentSkipListMap<>();
+    private final ScheduledExecutorService reporter;
+
+    /**
+     * Starts tracking a run, logging its progress periodically.
+     *
+     * @param name the name of the run, prefixed to each report
+     * @param interval the interval between reports; zero to disable periodic reports
+     * @param subjects the number of RDF subjects processed so far
+     */
+    public Progress(String name, Duration interval, LongSupplier subjects) {
+        this.name = name;
+        this.subjects = subjects;
+        register();
+        if (interval.isZero() || interval.isNegative()) {
+            this.reporter = null;
+            return;
+        }
+        this.reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, String.format("progress-%s", name));
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.reporter.scheduleAtFixedRate(
+            () -> LOG.info(this::report), interval.toMillis(), interval.toMillis(),
+            TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Creates a progress tracker whose report interval is configured via
+     * <code>$ARC_PROGRESS_INTERVAL</code>/ <code>-Darc.progress.interval</code> in seconds
+     * (default: 60).
+     */
+    public static Progress configured(String name, LongSupplier subjects) {
+        return new Progress(name, Duration.ofSeconds(
+            Util.config("ARC_PROGRESS_INTERVAL", "arc.progress.interval")
+                .map(Long::parseLong)
+                .orElse(60L)
+        ), subjects);
+    }
+
+    /**
+     * Adds to the number of projects to be processed.
+     */
+    public void expectProjects(int count) {
+        expectedProjects.addAndGet(count);
+    }
+
+    /**
+     * Wraps a project filter, counting projects it rejects as skipped.
+     */
+    public <T> Predicate<T> skipping(Predicate<T> filter) {
+        return project -> {
+            final boolean accepted = filter.test(project);
+            if (!accepted) {
+                skippedProjects.incrementAndGet();
+            }
+            return accepted;
+        };
+    }
+
+    /**
+     * Records the files of a project about to be processed.
+     *
+     * @param project the name of the project
+     * @param rdfFiles the files to process
+     */
+    public void inventory(String project, Collection<File> rdfFiles) {
+        long size = 0;
+        for (File rdfFile : rdfFiles) {
+            size += rdfFile.length();
+        }
+        inventory(project, rdfFiles.size(), size);
+    }
+
+    /**
+     * Records the number and size of files of a project about to be processed.
+     */
+    public void inventory(String project, long fileCount, long size) {
+        projects.put(project, new Project(fileCount));
+        knownProjects.incrementAndGet();
+        totalFiles.add(fileCount);
+        totalBytes.add(size);
+    }
+
+    /**
+     * Records a processed file.
+     *
+     * @param project the name of the project containing the file
+     * @param size the size of the file in bytes
+     */
+    public void processed(String project, long size) {
+        files.increment();
+        bytes.add(size);
+        final Project tracked = projects.get(project);
+        if (tracked != null) {
+            tracked.files.increment();
+        }
+    }
+
+    /**
+     * Records a completed project.
+     */
+    public void completed(String project) {
+        projects.remove(project);
+        completedProjects.incrementAndGet();
+    }
+
+    /**
+     * Describes the current progress.
+     */
+    public String report() {
+        final double seconds = Math.max(1e-3, (System.nanoTime() - started) / 1e9);
+        final long processedFiles = files.sum();
+        final long processedBytes = bytes.sum();
+        final long knownBytes = totalBytes.sum();
+        final int known = knownProjects.get();
+        final int pending = Math.max(0,
+            expectedProjects.get() - skippedProjects.get() - known
+        );
+        final double estimatedBytes = knownBytes
+            + (known == 0 ? 0 : (double) knownBytes / known * pending);
+        final double bytesPerSecond = processedBytes / seconds;
+
+        final StringBuilder report = new StringBuilder();
+        report.append(String.format(
+            "~ %s: %d/%d project(s), %d/%d file(s), %.1f%% of %.1f MB; "
+                + "%.1f file(s)/s, %.2f MB/s, %.1f subject(s)/s; ETA %s",
+            name,
+            completedProjects.get(), expectedProjects.get() - skippedProjects.get(),
+            processedFiles, totalFiles.sum(),
+            estimatedBytes == 0 ? 0.0 : 100.0 * processedBytes / estimatedBytes,
+            estimatedBytes / 1e6,
+            processedFiles / seconds,
+            bytesPerSecond / 1e6,
+            subjects.getAsLong() / seconds,
+            bytesPerSecond == 0 || pending > 0 && known == 0
+                ? "unknown"
+                : Duration.ofSeconds((long) (
+                    Math.max(0, estimatedBytes - processedBytes) / bytesPerSecond
+                )).toString().substring(2).toLowerCase()
+        ));
+        if (!projects.isEmpty()) {
+            report.append('\n').append(projects.entrySet().stream()
+                .map(project -> String.format("  %s %d/%d",
+                    project.getKey(), project.getValue().files.sum(), project.getValue().total))
+                .collect(Collectors.joining("\n")));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Stops the periodic reports and logs a final one.
+     */
+    @Override
+    public void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+        }
+        LOG.info(this::report);
+    }
+
+    private void register() {
+        Metrics.counters("arc_files_processed_total", "Files processed", "run")
+            .register(files::sum, name);
+        Metrics.counters("arc_bytes_processed_total", "Bytes of files processed", "run")
+            .register(bytes::sum, name);
+        Metrics.counters("arc_subjects_processed_total", "RDF subjects processed", "run")
+            .register(subjects, name);
+        Metrics.counters("arc_projects_completed_total", "Projects completed", "run")
+            .register(completedProjects::get, name);
+        Metrics.gauges("arc_projects_expected", "Projects to be processed", "run")
+            .register(() -> expectedProjects.get() - skippedProjects.get(), name);
+        Metrics.gauges("arc_files_expected", "Files of projects with a known inventory", "run")
+            .register(totalFiles::sum, name);
+        Metrics.gauges("arc_bytes_expected", "Bytes of projects with a known inventory", "run")
+            .register(totalBytes::sum, name);
+    }
+
+    private static class Project {
+        final long total;
+        final LongAdder files = new LongAdder();
+
+        Project(long total) {
+            this.total = total;
+        }
+    }
+}
@@ -20,6 +20,10 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -32,6 +36,8 @@ public class RdfProject {
     public final Git git;
     public final Path dotGit;
 
+    private final Set<Path> changes = ConcurrentHashMap.newKeySet();
+
     public RdfProject(Git git) {
         this.git = git;
         this.dotGit = git.repository.toPath().resolve(".git");
@@ -65,23 +71,39 @@ public class RdfProject {
                     .filter(p -> !p.startsWith(dotGit))
                     .filter(Files::isRegularFile)
                     .map(Path::toFile)
-                    .filter(f -> RDF_FILE_EXTENSIONS.matcher(f.getName().toLowerCase()).find());
+                    .filter(f -> isRdfFile(f.getName()));
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
     /**
-     * Creates a new Git commit if there have been changes to the working tree.
+     * Records a file in the working tree as changed, to be included in the next commit.
+     *
+     * @param file the written file
+     * @see RdfProject#commitIfChanged(String)
+     */
+    public void changed(File file) {
+        changes.add(git.repository.toPath().toAbsolutePath().relativize(
+            file.toPath().toAbsolutePath()
+        ));
+    }
+
+    /**
+     * Creates a new Git commit if files have been {@link #changed(File) recorded as changed}.
+     *
+     * <p>Only the recorded paths are staged; the working tree is not rescanned.</p>
      *
      * @param message the commit message
      * @return <code>true</code> if a commit has been created
      */
     public boolean commitIfChanged(String message) {
-        if (git.status().isEmpty()) {
+        final List<Path> committed = new ArrayList<>(changes);
+        if (committed.isEmpty()) {
             return false;
         }
-        git.commit(message);
+        git.commit(message, committed);
+        changes.removeAll(committed);
         return true;
     }
 
@@ -94,5 +116,16 @@ public class RdfProject {
         return git.toString();
     }
 
+    /**
+     * Checks whether a file name denotes a RDF/XML file.
+     *
+     * @param name the file name or path
+     * @return <code>true</code> if the name has the extension <code>.rdf</code> or
+     *     <code>.xml</code>
+     */
+    public static boolean isRdfFile(String name) {
+        return RDF_FILE_EXTENSIONS.matcher(name.toLowerCase()).find();
+    }
+
     private static final Pattern RDF_FILE_EXTENSIONS = Pattern.compile("\\.(rdf)|(xml)$");
 }
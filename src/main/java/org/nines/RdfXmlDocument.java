@@ -21,6 +21,7 @@ import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.vocabulary.RDF;
+import org.nines.events.FileProcessedEvent;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.traversal.DocumentTraversal;
@@ -28,15 +29,25 @@ import org.w3c.dom.traversal.NodeFilter;
 import org.w3c.dom.traversal.NodeIterator;
 import org.xml.sax.SAXException;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.BooleanSupplier;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
@@ -58,15 +69,86 @@ public class RdfXmlDocument {
         }
     }
 
-    public static File format(File file) throws IOException, SAXException, TransformerException {
-        new RdfXmlDocument(file).write(file);
-        return file;
+    /**
+     * Reads a RDF model from a stream of RDF/XML.
+     *
+     * @param rdf the RDF/XML source
+     * @param base the base URI against which relative URIs are resolved
+     * @return the parsed model
+     */
+    public static Model model(InputStream rdf, String base) {
+        return ModelFactory.createDefaultModel().read(rdf, base);
+    }
+
+    /**
+     * Formats a RDF/XML file in place.
+     *
+     * @param file the file to format
+     * @return <code>true</code> if the file's contents have been changed
+     * @see RdfXmlDocument#write(File)
+     */
+    public static boolean format(File file)
+        throws IOException, SAXException, TransformerException {
+        final FileProcessedEvent event = new FileProcessedEvent();
+        event.begin();
+        final long bytes = file.length();
+
+        long start = System.nanoTime();
+        final RdfXmlDocument xml = new RdfXmlDocument(file);
+        event.domParse = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        final boolean written = xml.write(file);
+        event.serialize = System.nanoTime() - start;
+
+        commit(event, file.getPath(), bytes, () -> written);
+        return written;
+    }
+
+    /**
+     * Formats RDF/XML held in memory.
+     *
+     * @param rdf the RDF/XML source
+     * @param systemId the system ID of the source, used for resolving relative URIs
+     * @return the formatted RDF/XML
+     */
+    public static byte[] format(byte[] rdf, String systemId)
+        throws IOException, SAXException, TransformerException {
+        final FileProcessedEvent event = new FileProcessedEvent();
+        event.begin();
+
+        long start = System.nanoTime();
+        final RdfXmlDocument xml = new RdfXmlDocument(new ByteArrayInputStream(rdf), systemId);
+        event.domParse = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        final byte[] formatted = xml.toByteArray();
+        event.serialize = System.nanoTime() - start;
+
+        commit(event, systemId, rdf.length, () -> !Arrays.equals(rdf, formatted));
+        return formatted;
+    }
+
+    private static void commit(FileProcessedEvent event, String path, long bytes,
+                               BooleanSupplier changed) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = "format";
+            event.path = path;
+            event.bytes = bytes;
+            event.changed = changed.getAsBoolean();
+            event.commit();
+        }
     }
 
     public RdfXmlDocument(File file) throws IOException, SAXException {
         this(XML.newDocumentBuilder().parse(file));
     }
 
+    public RdfXmlDocument(InputStream rdf, String systemId) throws IOException, SAXException {
+        this(XML.newDocumentBuilder().parse(rdf, systemId));
+    }
+
     public RdfXmlDocument(Document document) {
         this.document = document;
         this.resourceIndex = resourceIndex(document);
@@ -76,12 +158,45 @@ public class RdfXmlDocument {
      * Serializes the DOM to a given file, removing empty text nodes and indenting the source
      * in the process.
      *
+     * <p>The DOM is serialized to a temporary file next to the destination, which replaces the
+     * destination only if their contents differ, so large documents are never held in memory
+     * twice.</p>
+     *
      * @param rdf the destination file
+     * @return <code>true</code> if the file has been written
      */
-    public void write(File rdf) throws TransformerException {
+    public boolean write(File rdf) throws TransformerException, IOException {
+        final Path destination = rdf.toPath();
+        final Path serialized = destination.resolveSibling("." + rdf.getName() + ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(serialized))) {
+                write(new StreamResult(out));
+            }
+            if (rdf.isFile() && contentEquals(destination, serialized)) {
+                return false;
+            }
+            Files.move(serialized, destination, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } finally {
+            Files.deleteIfExists(serialized);
+        }
+    }
+
+    /**
+     * Serializes the DOM to a byte array.
+     *
+     * @see RdfXmlDocument#write(File)
+     */
+    public byte[] toByteArray() throws TransformerException {
+        final ByteArrayOutputStream rdf = new ByteArrayOutputStream();
+        write(new StreamResult(rdf));
+        return rdf.toByteArray();
+    }
+
+    private void write(StreamResult result) throws TransformerException {
         XML.nodes(EMPTY_TEXT_NODES, document).forEach(n -> n.getParentNode().removeChild(n));
         XML.indentingTransformer(XML.newTransformer())
-                .transform(new DOMSource(document), new StreamResult(rdf));
+                .transform(new DOMSource(document), result);
     }
 
     /**
@@ -148,6 +263,43 @@ public class RdfXmlDocument {
         }
     }
 
+    private static boolean contentEquals(Path a, Path b) throws IOException {
+        if (Files.size(a) != Files.size(b)) {
+            return false;
+        }
+        final byte[] bufferA = new byte[COMPARISON_BUFFER_SIZE];
+        final byte[] bufferB = new byte[COMPARISON_BUFFER_SIZE];
+        try (InputStream streamA = Files.newInputStream(a);
+             InputStream streamB = Files.newInputStream(b)) {
+            while (true) {
+                final int length = fill(streamA, bufferA);
+                if (fill(streamB, bufferB) != length) {
+                    return false;
+                }
+                if (length == 0) {
+                    return true;
+                }
+                for (int bi = 0; bi < length; bi++) {
+                    if (bufferA[bi] != bufferB[bi]) {
+                        return false;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int fill(InputStream stream, byte[] buffer) throws IOException {
+        int length = 0;
+        while (length < buffer.length) {
+            final int read = stream.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
     private static String qualifiedName(Element parent, Property property) {
         return Optional.ofNullable(parent.lookupPrefix(property.getNameSpace()))
                 .map(prefix -> prefix + ":").orElse("") + property.getLocalName();
@@ -179,4 +331,6 @@ public class RdfXmlDocument {
         "//text()[normalize-space(.) = '']"
     );
 
+    private static final int COMPARISON_BUFFER_SIZE = 64 * 1024;
+
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import org.apache.jena.rdf.model.Property;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A set of {@link LocRelators role properties}, indexed by their MARC relator codes.
+ *
+ * <p>Relator codes consist of three letters, so a role is packed into an integer in
+ * <code>[0, 26&sup3;)</code> and looked up in a bit set. Roles with other local names are kept
+ * in a {@link Vocabulary}.</p>
+ */
+public final class RoleCodes {
+
+    private static final int CODE_LENGTH = 3;
+    private static final int CODES = 26 * 26 * 26;
+
+    private final BitSet codes = new BitSet(CODES);
+    private final Vocabulary others;
+
+    /**
+     * Indexes a set of role properties.
+     *
+     * @param roles the roles; properties outside of the relators' namespace are ignored
+     */
+    public RoleCodes(Collection<Property> roles) {
+        final List<String> others = new ArrayList<>();
+        for (Property role : roles) {
+            final String uri = role.getURI();
+            if (!uri.startsWith(LocRelators.uri)) {
+                continue;
+            }
+            final int code = code(uri);
+            if (code >= 0) {
+                codes.set(code);
+            } else {
+                others.add(uri.substring(LocRelators.uri.length()));
+            }
+        }
+        this.others = Vocabulary.of(others);
+    }
+
+    /**
+     * Tests whether a property denotes a role, i.e. whether it belongs to the relators'
+     * namespace.
+     *
+     * @param property the property
+     * @return <code>true</code> for role properties, valid or not
+     */
+    public static boolean isRole(Property property) {
+        final String uri = property.getURI();
+        return uri.startsWith(LocRelators.uri)
+            && (code(uri) >= 0 || LocRelators.uri.equals(property.getNameSpace()));
+    }
+
+    /**
+     * Tests whether a property is one of the indexed roles.
+     *
+     * @param uri the property's URI
+     * @return <code>true</code> if the property is contained in this set
+     */
+    public boolean contains(String uri) {
+        if (!uri.startsWith(LocRelators.uri)) {
+            return false;
+        }
+        final int code = code(uri);
+        return code >= 0
+            ? codes.get(code)
+            : others.contains(uri.subSequence(LocRelators.uri.length(), uri.length()));
+    }
+
+    /**
+     * Packs the relator code of a role URI.
+     *
+     * @param uri a URI in the relators' namespace
+     * @return the packed code or <code>-1</code> if the local name is not a relator code
+     */
+    static int code(String uri) {
+        final int start = LocRelators.uri.length();
+        if (uri.length() != start + CODE_LENGTH) {
+            return -1;
+        }
+        int code = 0;
+        for (int ci = start; ci < uri.length(); ci++) {
+            final char c = uri.charAt(ci);
+            if (c < 'A' || c > 'Z') {
+                return -1;
+            }
+            code = code * 26 + (c - 'A');
+        }
+        return code;
+    }
+}
@@ -137,14 +137,38 @@ public class Rule {
      *     been added and/or removed
      */
     public boolean apply(Resource resource, RdfXmlDocument xml) {
+        return apply(resource, xml, null);
+    }
+
+    /**
+     * Attempts to apply this rule to a given RDF subject, counting the outcome.
+     *
+     * @param resource the RDF subject to test
+     * @param xml      the RDF/XML DOM to be modified in case this rule applies
+     * @param counters the counters to update or <code>null</code>
+     * @return <code>true</code> if this rule's filter matched the given subject and properties have
+     *     been added and/or removed
+     * @see #apply(Resource, RdfXmlDocument)
+     */
+    public boolean apply(Resource resource, RdfXmlDocument xml, RuleMetrics.Counters counters) {
         boolean applied = false;
 
         if (appliesTo(resource)) {
+            int added = 0;
+            int removed = 0;
             for (PropertyValue propertyValue : addedProperties) {
-                applied = propertyValue.addTo(resource, xml) || applied;
+                if (propertyValue.addTo(resource, xml)) {
+                    added++;
+                }
             }
             for (PropertyValue propertyValue : removedProperties) {
-                applied = propertyValue.removeFrom(resource, xml) || applied;
+                if (propertyValue.removeFrom(resource, xml)) {
+                    removed++;
+                }
+            }
+            applied = added > 0 || removed > 0;
+            if (counters != null) {
+                counters.matched(added, removed);
             }
         }
 
@@ -0,0 +1,205 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import org.apache.jena.rdf.model.Resource;
+import org.nines.filters.CountingSubjectFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Counters describing the application of a rule set.
+ *
+ * <p>Per rule, evaluations, matches, added and removed properties and matches without effect
+ * (no-ops) are counted; per node of a rule's subject filter, evaluations, matches and child
+ * evaluations skipped by short-circuiting. The time spent applying a rule is measured for a
+ * random sample of evaluations and extrapolated. Counters are striped, so concurrent
+ * migrations hardly contend for them.</p>
+ */
+public class RuleMetrics {
+
+    public static final String[] CSV_HEADER = {
+        "Rule", "Node", "Filter", "Evaluated", "Matched", "Added", "Removed", "No-op", "Skipped",
+        "Time (ms, est.)"
+    };
+
+    private final Rule[] rules;
+    private final Counters[] counters;
+    private final CountingSubjectFilter[] filters;
+    private final int sampleRate;
+
+    /**
+     * Instruments a set of rules.
+     *
+     * @param rules the rules to instrument
+     * @param sampleRate measure the time of one in <code>sampleRate</code> evaluations on average
+     */
+    public RuleMetrics(Rule[] rules, int sampleRate) {
+        this.rules = new Rule[rules.length];
+        this.counters = new Counters[rules.length];
+        this.filters = new CountingSubjectFilter[rules.length];
+        this.sampleRate = Math.max(1, sampleRate);
+        for (int ri = 0; ri < rules.length; ri++) {
+            filters[ri] = CountingSubjectFilter.instrument(rules[ri].subjectFilter);
+            counters[ri] = new Counters();
+            this.rules[ri] = new Rule(
+                filters[ri], rules[ri].addedProperties, rules[ri].removedProperties
+            );
+        }
+    }
+
+    /**
+     * The instrumented rules, whose filters update this instance's counters.
+     */
+    public Rule[] rules() {
+        return rules.clone();
+    }
+
+    /**
+     * Applies an instrumented rule, counting the outcome.
+     *
+     * @param rule the index of the rule
+     * @see Rule#apply(Resource, RdfXmlDocument, Counters)
+     */
+    public boolean apply(int rule, Resource subject, RdfXmlDocument xml) {
+        final Counters ruleCounters = counters[rule];
+        ruleCounters.evaluated.increment();
+        if (ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return rules[rule].apply(subject, xml, ruleCounters);
+        }
+        final long start = System.nanoTime();
+        try {
+            return rules[rule].apply(subject, xml, ruleCounters);
+        } finally {
+            ruleCounters.sampledNanos.add(System.nanoTime() - start);
+            ruleCounters.samples.increment();
+        }
+    }
+
+    /**
+     * Reports the counters.
+     *
+     * @return rows matching {@link #CSV_HEADER}: one per rule, each followed by one per node of
+     *     its subject filter in pre-order, identified by its path in the filter tree
+     */
+    public Stream<String[]> report() {
+        final List<String[]> rows = new ArrayList<>();
+        for (int ri = 0; ri < rules.length; ri++) {
+            final Counters rc = counters[ri];
+            rows.add(new String[] {
+                Integer.toString(ri + 1),
+                "",
+                "",
+                Long.toString(rc.evaluated.sum()),
+                Long.toString(rc.matched.sum()),
+                Long.toString(rc.added.sum()),
+                Long.toString(rc.removed.sum()),
+                Long.toString(rc.noop.sum()),
+                "",
+                Long.toString(TimeUnit.NANOSECONDS.toMillis(rc.estimatedNanos()))
+            });
+            report(ri, filters[ri], "1", rows);
+        }
+        return rows.stream();
+    }
+
+    private static void report(int rule, CountingSubjectFilter filter, String node,
+                               List<String[]> rows) {
+        rows.add(new String[] {
+            Integer.toString(rule + 1),
+            node,
+            filter.label(),
+            Long.toString(filter.evaluations()),
+            Long.toString(filter.matches()),
+            "",
+            "",
+            "",
+            Long.toString(filter.skipped()),
+            ""
+        });
+        for (int ci = 0; ci < filter.children.length; ci++) {
+            report(rule, filter.children[ci], String.format("%s.%d", node, ci + 1), rows);
+        }
+    }
+
+    /**
+     * Formats the {@link #report() report} as a plain-text table.
+     */
+    public String table() {
+        final List<String[]> rows = Stream.concat(Stream.<String[]>of(CSV_HEADER), report())
+            .collect(Collectors.toList());
+        final int[] widths = new int[CSV_HEADER.length];
+        for (String[] row : rows) {
+            for (int ci = 0; ci < row.length; ci++) {
+                widths[ci] = Math.min(60, Math.max(widths[ci], row[ci].length()));
+            }
+        }
+        final StringBuilder table = new StringBuilder();
+        for (String[] row : rows) {
+            for (int ci = 0; ci < row.length; ci++) {
+                final String cell = row[ci].length() > widths[ci]
+                    ? row[ci].substring(0, widths[ci] - 3) + "..."
+                    : row[ci];
+                table.append(String.format(
+                    ci == 1 || ci == 2 ? "%-" + widths[ci] + "s " : "%" + widths[ci] + "s ", cell
+                ));
+            }
+            table.append('\n');
+        }
+        return table.toString();
+    }
+
+    /**
+     * The counters of one rule.
+     */
+    public static class Counters {
+        private final LongAdder evaluated = new LongAdder();
+        private final LongAdder matched = new LongAdder();
+        private final LongAdder added = new LongAdder();
+        private final LongAdder removed = new LongAdder();
+        private final LongAdder noop = new LongAdder();
+        private final LongAdder sampledNanos = new LongAdder();
+        private final LongAdder samples = new LongAdder();
+
+        /**
+         * Counts a match of the rule's subject filter.
+         *
+         * @param addedProperties the number of properties actually added
+         * @param removedProperties the number of properties actually removed
+         */
+        public void matched(int addedProperties, int removedProperties) {
+            matched.increment();
+            added.add(addedProperties);
+            removed.add(removedProperties);
+            if (addedProperties == 0 && removedProperties == 0) {
+                noop.increment();
+            }
+        }
+
+        long estimatedNanos() {
+            final long sampleCount = samples.sum();
+            return sampleCount == 0
+                ? 0
+                : (long) ((double) sampledNanos.sum() / sampleCount * evaluated.sum());
+        }
+    }
+}
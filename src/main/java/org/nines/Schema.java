@@ -78,25 +78,13 @@ public class Schema {
             .map(subject -> validate(rdfProject, subject));
     }
 
+    /**
+     * Validates a RDF subject.
+     *
+     * @see SchemaValidator#validate(Resource)
+     */
     public static Error[] validate(RdfProject project, Resource resource) {
-        final List<List<Error>> errors;
-        if (project.git.gitLabProject.name.contains("pages_")) {
-            errors = Arrays.asList(
-                validatePagesRequired(resource),
-                validateUri(resource)
-            );
-        } else {
-            errors = Arrays.asList(
-                validateRequired(resource),
-                validate(resource, Collex.genre, VALID_GENRES, "Genre not approved by ARC"),
-                validate(resource, Collex.discipline, VALID_DISCIPLINES, "Discipline not approved by ARC"),
-                validate(resource, DC.type, VALID_TYPES, "Type not approved by ARC"),
-                validateRole(resource),
-                validateUri(resource)
-            );
-        }
-
-        return errors.stream().flatMap(List::stream).toArray(Error[]::new);
+        return SchemaValidator.forProject(project).validate(resource);
     }
 
     public static List<Error> validateRole(Resource resource) {
@@ -0,0 +1,333 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.DC;
+import org.apache.jena.vocabulary.RDFS;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Validates RDF subjects against {@link Schema ARC's schema} in a single pass over their
+ * statements.
+ *
+ * <p>Instead of querying a subject's properties once per check, each statement is dispatched on
+ * its predicate through a precomputed table to the checks concerning it: required properties,
+ * cardinalities, vocabularies, roles and URIs. Validators are immutable and can be shared
+ * between threads.</p>
+ */
+public class SchemaValidator {
+
+    private static final Vocabulary GENRES = Vocabulary.of(Schema.VALID_GENRES);
+    private static final Vocabulary DISCIPLINES = Vocabulary.of(Schema.VALID_DISCIPLINES);
+    private static final Vocabulary TYPES = Vocabulary.of(Schema.VALID_TYPES);
+    private static final RoleCodes ROLES = new RoleCodes(Schema.VALID_ROLES);
+
+    /**
+     * Identifies the checks performed by validators, changing whenever the schema, its
+     * vocabularies or the checks' implementation change.
+     *
+     * @see ValidationCache
+     */
+    public static final String VERSION = version(3);
+
+    /**
+     * Validator for catalog records.
+     */
+    public static final SchemaValidator CATALOG = new SchemaValidator(false);
+
+    /**
+     * Validator for page records, i.e. those in projects named <code>*pages_*</code>.
+     */
+    public static final SchemaValidator PAGES = new SchemaValidator(true);
+
+    private final boolean pages;
+    private final Map<Property, PredicateChecks> checks = new HashMap<>();
+    private final Property[] required;
+    private final Property[] singletons;
+
+    private SchemaValidator(boolean pages) {
+        this.pages = pages;
+        this.required = (pages ? Schema.REQUIRED_PAGE_PROPERTIES : Schema.REQUIRED_PROPERTIES)
+            .toArray(new Property[0]);
+        this.singletons = pages
+            ? new Property[0]
+            : new Property[] { Collex.archive, DC.title, RDFS.seeAlso };
+
+        for (int pi = 0; pi < required.length; pi++) {
+            checks(required[pi]).required = pi;
+        }
+        for (int pi = 0; pi < singletons.length; pi++) {
+            checks(singletons[pi]).singleton = pi;
+        }
+        checks(RDFS.seeAlso).uri = true;
+        if (pages) {
+            checks(Collex.text).blankText = true;
+        } else {
+            checks(Collex.genre).vocabulary(GENRES, ErrorCode.GENRE_NOT_APPROVED);
+            checks(Collex.discipline).vocabulary(DISCIPLINES, ErrorCode.DISCIPLINE_NOT_APPROVED);
+            checks(DC.type).vocabulary(TYPES, ErrorCode.TYPE_NOT_APPROVED);
+        }
+    }
+
+    /**
+     * Selects the validator appropriate for the records of a project.
+     *
+     * @param project the project containing the records to validate
+     * @return {@link #PAGES} for page projects, {@link #CATALOG} otherwise
+     */
+    public static SchemaValidator forProject(RdfProject project) {
+        return forProject(project.git.gitLabProject);
+    }
+
+    /**
+     * Selects the validator appropriate for the records of a GitLab project.
+     *
+     * @see #forProject(RdfProject)
+     */
+    public static SchemaValidator forProject(Arc.GitLabProject gitLabProject) {
+        return gitLabProject.name.contains("pages_") ? PAGES : CATALOG;
+    }
+
+    /**
+     * Validates a RDF subject.
+     *
+     * @param subject the subject to validate
+     * @return the validation errors
+     */
+    public Schema.Error[] validate(Resource subject) {
+        final List<Schema.Error> errors = new ArrayList<>();
+        validate(subject, errors);
+        return errors.toArray(new Schema.Error[errors.size()]);
+    }
+
+    /**
+     * Validates a RDF subject, adding errors to a given (reusable) buffer.
+     *
+     * @param subject the subject to validate
+     * @param errors the buffer receiving validation errors
+     */
+    public void validate(Resource subject, List<Schema.Error> errors) {
+        validate(subject, Errors.collecting(errors::add));
+    }
+
+    /**
+     * Validates a RDF subject, reporting errors to a given receiver.
+     *
+     * @param subject the subject to validate
+     * @param errors the receiver of validation errors
+     */
+    public void validate(Resource subject, Errors errors) {
+        final SubjectValidation validation = begin(subject);
+        for (final StmtIterator it = subject.listProperties(); it.hasNext(); ) {
+            final Statement stmt = it.nextStatement();
+            validation.statement(stmt.getPredicate(), stmt.getObject(), errors);
+        }
+        validation.end(errors);
+    }
+
+    /**
+     * Starts the validation of a RDF subject whose statements are fed one by one, e.g. while
+     * parsing.
+     *
+     * @param subject the subject to validate
+     * @return the validation state of the subject
+     */
+    public SubjectValidation begin(Resource subject) {
+        return new SubjectValidation(subject);
+    }
+
+    /**
+     * Receives validation errors.
+     */
+    @FunctionalInterface
+    public interface Errors {
+
+        /**
+         * Reports an error.
+         *
+         * @param subject the invalid subject
+         * @param property the property concerned, <code>null</code> if the error concerns the
+         *     subject as a whole
+         * @param value the invalid value, <code>null</code> if the error concerns the property
+         * @param code the kind of error
+         */
+        void error(Resource subject, Property property, RDFNode value, ErrorCode code);
+
+        /**
+         * Adapts a consumer of {@link Schema.Error} instances.
+         */
+        static Errors collecting(Consumer<Schema.Error> errors) {
+            return (subject, property, value, code) -> errors.accept(
+                new Schema.Error(subject, property, value, code.message)
+            );
+        }
+    }
+
+    /**
+     * The validation state of a single RDF subject.
+     *
+     * <p>Like a model, the state disregards repeated statements: a singleton property with the
+     * same value twice is not reported, nor is an invalid value reported twice. To that end,
+     * only the first value of each singleton property and the statements found invalid are
+     * retained.</p>
+     */
+    public class SubjectValidation {
+
+        private final Resource subject;
+        private final RDFNode[] singletonValues = new RDFNode[singletons.length];
+        private long multiple = 0L;
+        private long present = 0L;
+        private boolean hasRole = false;
+        private Set<Map.Entry<Property, RDFNode>> invalid;
+
+        private SubjectValidation(Resource subject) {
+            this.subject = subject;
+        }
+
+        /**
+         * Validates a statement about the subject.
+         *
+         * @param predicate the statement's predicate
+         * @param object the statement's object
+         * @param errors the receiver of validation errors
+         */
+        public void statement(Property predicate, RDFNode object, Errors errors) {
+            final PredicateChecks predicateChecks = checks.get(predicate);
+            if (predicateChecks != null) {
+                if (predicateChecks.required >= 0) {
+                    present |= 1L << predicateChecks.required;
+                }
+                if (predicateChecks.singleton >= 0) {
+                    final RDFNode first = singletonValues[predicateChecks.singleton];
+                    if (first == null) {
+                        singletonValues[predicateChecks.singleton] = object;
+                    } else if (!first.equals(object)) {
+                        multiple |= 1L << predicateChecks.singleton;
+                    }
+                }
+                if (predicateChecks.vocabulary != null && !(object.isLiteral()
+                    && predicateChecks.vocabulary.contains(object.asLiteral().getLexicalForm()))) {
+                    error(errors, predicate, object, predicateChecks.vocabularyError);
+                }
+                if (predicateChecks.uri && !(object.isURIResource()
+                    && !object.asResource().getURI().startsWith("file:"))) {
+                    error(errors, predicate, object, ErrorCode.URI_NOT_RESOLVED);
+                }
+                if (predicateChecks.blankText && object.isLiteral()
+                    && object.asLiteral().getLexicalForm().isEmpty()) {
+                    error(errors, predicate, object, ErrorCode.BLANK_TEXT);
+                }
+            } else if (!pages && RoleCodes.isRole(predicate)) {
+                hasRole = true;
+                if (!ROLES.contains(predicate.getURI())) {
+                    error(errors, predicate, object, ErrorCode.INVALID_ROLE);
+                }
+            }
+        }
+
+        /**
+         * Completes the validation after all statements about the subject have been fed,
+         * checking required properties and cardinalities.
+         *
+         * @param errors the receiver of validation errors
+         */
+        public void end(Errors errors) {
+            for (int pi = 0; pi < required.length; pi++) {
+                if ((present & (1L << pi)) == 0) {
+                    error(errors, required[pi], null, ErrorCode.PROPERTY_REQUIRED);
+                }
+            }
+            for (int pi = 0; pi < singletons.length; pi++) {
+                if ((multiple & (1L << pi)) != 0) {
+                    error(errors, singletons[pi], null, ErrorCode.MORE_THAN_ONE_VALUE);
+                }
+            }
+            if (!pages && !hasRole) {
+                error(errors, null, null, ErrorCode.ROLE_REQUIRED);
+            }
+        }
+
+        private void error(Errors errors, Property property, RDFNode value, ErrorCode code) {
+            if (value != null) {
+                if (invalid == null) {
+                    invalid = new HashSet<>();
+                }
+                if (!invalid.add(new AbstractMap.SimpleImmutableEntry<>(property, value))) {
+                    return;
+                }
+            }
+            errors.error(subject, property, value, code);
+        }
+    }
+
+    private static String version(int implementation) {
+        final StringBuilder schema = new StringBuilder(Integer.toString(implementation));
+        for (ErrorCode code : ErrorCode.values()) {
+            schema.append('\n').append(code.name()).append('=').append(code.message);
+        }
+        Stream.of(
+            Schema.VALID_GENRES, Schema.VALID_DISCIPLINES, Schema.VALID_TYPES,
+            Schema.VALID_ROLES, Schema.REQUIRED_PROPERTIES, Schema.REQUIRED_PAGE_PROPERTIES
+        ).forEach(terms -> terms.stream()
+            .map(Object::toString)
+            .sorted()
+            .forEach(term -> schema.append('\n').append(term))
+        );
+        return Ledger.hash(schema.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private PredicateChecks checks(Property property) {
+        return checks.computeIfAbsent(property, p -> new PredicateChecks());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s%s", pages ? "pages" : "catalog", Arrays.toString(required));
+    }
+
+    /**
+     * The checks to apply to statements with a particular predicate.
+     */
+    private static class PredicateChecks {
+        int required = -1;
+        int singleton = -1;
+        Vocabulary vocabulary;
+        ErrorCode vocabularyError;
+        boolean uri;
+        boolean blankText;
+
+        void vocabulary(Vocabulary vocabulary, ErrorCode error) {
+            this.vocabulary = vocabulary;
+            this.vocabularyError = error;
+        }
+    }
+}
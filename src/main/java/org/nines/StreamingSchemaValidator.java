@@ -0,0 +1,194 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.rdfxml.xmlinput.ALiteral;
+import org.apache.jena.rdfxml.xmlinput.AResource;
+import org.apache.jena.rdfxml.xmlinput.SAX2RDF;
+import org.apache.jena.rdfxml.xmlinput.StatementHandler;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * Validates RDF/XML against {@link Schema ARC's schema} while parsing it, without building a
+ * model.
+ *
+ * <p>Triples are received from Jena's RDF/XML parser (ARP) via SAX and fed to the
+ * {@link SchemaValidator.SubjectValidation validation state} of their subject, which retains
+ * a few values per subject instead of all statements, so memory use is far below that of a
+ * model. Invalid values are reported as they are parsed; missing and repeated properties once
+ * the whole document has been parsed, as statements about a subject may be spread over
+ * several top-level elements. Anonymous subjects are skipped, as with
+ * {@link Schema#validate(RdfProject, org.apache.jena.rdf.model.Model)}.</p>
+ *
+ * <p>Results equal those of model-based validation, including for repeated statements.</p>
+ *
+ * <p>As a subject's statements may recur anywhere in the document, the validation state of all
+ * subjects is kept until the document has been parsed. Memory use thus grows with the number
+ * of subjects in a file, by a few retained values each, rather than being bounded per record;
+ * this remains well within the heap {@link Admission admitted} for a file.</p>
+ */
+public class StreamingSchemaValidator {
+
+    private static final SAXParserFactory SAX_PARSER_FACTORY = SAXParserFactory.newInstance();
+
+    static {
+        SAX_PARSER_FACTORY.setNamespaceAware(true);
+    }
+
+    private final SchemaValidator validator;
+
+    public StreamingSchemaValidator(SchemaValidator validator) {
+        this.validator = validator;
+    }
+
+    /**
+     * Validates the records of a RDF/XML file.
+     *
+     * @param rdfFile the file to validate
+     * @param errors receives the validation errors
+     * @return the number of validated subjects
+     * @see #validate(InputStream, String, ErrorHandler, SchemaValidator.Errors)
+     */
+    public int validate(File rdfFile, SchemaValidator.Errors errors)
+        throws IOException, SAXException {
+        try (InputStream rdf = Files.newInputStream(rdfFile.toPath())) {
+            return validate(rdf, rdfFile.toURI().toString(), null, errors);
+        }
+    }
+
+    /**
+     * Validates the records of a RDF/XML stream.
+     *
+     * @param rdf the RDF/XML source
+     * @param base the base URI against which relative URIs are resolved
+     * @param parseErrors receives XML and RDF syntax errors and warnings; if <code>null</code>,
+     *     the first error aborts the validation
+     * @param errors receives the validation errors
+     * @return the number of validated subjects, excluding anonymous ones
+     */
+    public int validate(InputStream rdf, String base, ErrorHandler parseErrors,
+                         SchemaValidator.Errors errors) throws IOException, SAXException {
+        final XMLReader xmlReader;
+        try {
+            xmlReader = SAX_PARSER_FACTORY.newSAXParser().getXMLReader();
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+
+        final Subjects subjects = new Subjects(errors);
+        final SAX2RDF sax2rdf = SAX2RDF.create(base);
+        sax2rdf.getHandlers().setStatementHandler(subjects);
+        sax2rdf.getHandlers().setErrorHandler(
+            parseErrors == null ? new FailingErrorHandler() : parseErrors
+        );
+        SAX2RDF.installHandlers(xmlReader, sax2rdf);
+
+        final InputSource source = new InputSource(rdf);
+        source.setSystemId(base);
+        xmlReader.parse(source);
+        return subjects.end();
+    }
+
+    /**
+     * Tracks the validation state of the subjects parsed so far.
+     */
+    private class Subjects implements StatementHandler {
+
+        private final SchemaValidator.Errors errors;
+        private final Map<String, SchemaValidator.SubjectValidation> validations =
+            new LinkedHashMap<>();
+
+        Subjects(SchemaValidator.Errors errors) {
+            this.errors = errors;
+        }
+
+        @Override
+        public void statement(AResource subj, AResource pred, AResource obj) {
+            statement(subj, pred, obj.isAnonymous()
+                ? ResourceFactory.createResource()
+                : ResourceFactory.createResource(obj.getURI()));
+        }
+
+        @Override
+        public void statement(AResource subj, AResource pred, ALiteral lit) {
+            final RDFNode object;
+            if (lit.getDatatypeURI() != null) {
+                object = ResourceFactory.createTypedLiteral(
+                    lit.toString(),
+                    TypeMapper.getInstance().getSafeTypeByName(lit.getDatatypeURI())
+                );
+            } else if (!lit.getLang().isEmpty()) {
+                object = ResourceFactory.createLangLiteral(lit.toString(), lit.getLang());
+            } else {
+                object = ResourceFactory.createPlainLiteral(lit.toString());
+            }
+            statement(subj, pred, object);
+        }
+
+        private void statement(AResource subj, AResource pred, RDFNode object) {
+            if (subj.isAnonymous()) {
+                return;
+            }
+            validations.computeIfAbsent(
+                subj.getURI(),
+                uri -> validator.begin(ResourceFactory.createResource(uri))
+            ).statement(ResourceFactory.createProperty(pred.getURI()), object, errors);
+        }
+
+        int end() {
+            for (SchemaValidator.SubjectValidation validation : validations.values()) {
+                validation.end(errors);
+            }
+            return validations.size();
+        }
+    }
+
+    /**
+     * Aborts parsing on errors, ignoring warnings.
+     */
+    private static class FailingErrorHandler implements ErrorHandler {
+
+        @Override
+        public void warning(SAXParseException exception) {
+        }
+
+        @Override
+        public void error(SAXParseException exception) throws SAXException {
+            throw exception;
+        }
+
+        @Override
+        public void fatalError(SAXParseException exception) throws SAXException {
+            throw exception;
+        }
+    }
+}
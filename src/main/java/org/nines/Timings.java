@@ -0,0 +1,296 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Latency distributions and byte throughput of the stages of a migration.
+ *
+ * <p>Each stage of processing a project or file is timed via {@link #start()} and
+ * {@link #record(Stage, long, long)}. Timings are recorded overall and for the project
+ * {@link #project(String) in scope} on the recording thread. Once a project is
+ * {@link #completed(String) completed}, its distributions are condensed into report rows, so
+ * memory use does not grow with the number of projects. Distributions are allocated on first
+ * use.</p>
+ */
+public final class Timings {
+
+    private static final Logger LOG = Logging.forClass(Timings.class);
+
+    public static final String[] CSV_HEADER = {
+        "Project", "Stage", "Count", "Min (ms)", "p50 (ms)", "p90 (ms)", "p99 (ms)", "p99.9 (ms)",
+        "Max (ms)", "Total (ms)", "Bytes", "MB/s"
+    };
+
+    private static final String OVERALL = "(all)";
+
+    /**
+     * The stages of a migration.
+     */
+    public enum Stage {
+        CLONE, CHECKOUT, WALK, FORMAT, DOM_PARSE, RDF_PARSE, RULES, SERIALIZE, COMMIT
+    }
+
+    private static final Project overall = new Project(OVERALL);
+    private static final Map<String, Project> projects = new ConcurrentHashMap<>();
+    private static final List<String[]> completed = Collections.synchronizedList(
+        new ArrayList<>()
+    );
+    private static final ThreadLocal<Project> scope = new ThreadLocal<>();
+
+    private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+        1, r -> {
+            final Thread thread = new Thread(r, "timings");
+            thread.setDaemon(true);
+            return thread;
+        }
+    );
+
+    static {
+        final Metrics.Summaries durations = Metrics.summaries(
+            "arc_stage_duration_seconds", "Duration of migration stages", 1e-9, "stage"
+        );
+        final Metrics.Counters bytes = Metrics.counters(
+            "arc_stage_bytes_total", "Bytes processed by migration stages", "stage"
+        );
+        for (Stage stage : Stage.values()) {
+            durations.register(() -> {
+                final Stats stats = overall.stats.get(stage.ordinal());
+                return stats == null ? null : stats.latencies;
+            }, stage.name());
+            bytes.register(() -> {
+                final Stats stats = overall.stats.get(stage.ordinal());
+                return stats == null ? 0 : stats.bytes.sum();
+            }, stage.name());
+        }
+    }
+
+    private Timings() {
+    }
+
+    /**
+     * Starts timing a stage.
+     *
+     * @return the start time, to be passed on {@link #record(Stage, long, long)}
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the duration of a stage.
+     *
+     * @param stage the stage
+     * @param start the start time obtained via {@link #start()}
+     * @param bytes the number of bytes processed, if applicable
+     * @return the duration in nanoseconds
+     */
+    public static long record(Stage stage, long start, long bytes) {
+        final long nanos = System.nanoTime() - start;
+        overall.stats(stage).record(nanos, bytes);
+        final Project project = scope.get();
+        if (project != null) {
+            project.stats(stage).record(nanos, bytes);
+        }
+        return nanos;
+    }
+
+    /**
+     * Attributes timings recorded on the current thread to a project, until the returned scope
+     * is closed.
+     *
+     * @param name the name of the project
+     */
+    public static Scope project(String name) {
+        final Project previous = scope.get();
+        scope.set(projects.computeIfAbsent(name, Project::new));
+        return () -> {
+            if (previous == null) {
+                scope.remove();
+            } else {
+                scope.set(previous);
+            }
+        };
+    }
+
+    /**
+     * The name of the project in scope on the current thread.
+     *
+     * @return the name or <code>null</code> if no project is in scope
+     */
+    public static String currentProject() {
+        final Project project = scope.get();
+        return project == null ? null : project.name;
+    }
+
+    /**
+     * Condenses the timings of a completed project into report rows, logging them.
+     *
+     * @param name the name of the project
+     */
+    public static void completed(String name) {
+        final Project project = projects.remove(name);
+        if (project == null) {
+            return;
+        }
+        final List<String[]> rows = rows(name, project).collect(Collectors.toList());
+        completed.addAll(rows);
+        LOG.fine(() -> String.format("%s\n%s", name, table(rows.stream())));
+    }
+
+    /**
+     * Reports the timings.
+     *
+     * @return rows matching {@link #CSV_HEADER}: the overall ones followed by those of completed
+     *     projects
+     */
+    public static Stream<String[]> report() {
+        final List<String[]> projectRows;
+        synchronized (completed) {
+            projectRows = new ArrayList<>(completed);
+        }
+        return Stream.concat(rows(OVERALL, overall), projectRows.stream());
+    }
+
+    /**
+     * Formats the overall timings as a plain-text table.
+     */
+    public static String table() {
+        return table(rows(OVERALL, overall));
+    }
+
+    /**
+     * Logs the overall timings periodically.
+     *
+     * @param interval the interval between reports
+     * @return the scheduled task, to be cancelled when no longer needed
+     */
+    public static ScheduledFuture<?> logPeriodically(Duration interval) {
+        return scheduler.scheduleAtFixedRate(
+            () -> LOG.log(Level.INFO, () -> String.format("~ timings\n%s", table())),
+            interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS
+        );
+    }
+
+    private static Stream<String[]> rows(String name, Project project) {
+        return Stream.of(Stage.values())
+            .filter(stage -> project.stats.get(stage.ordinal()) != null)
+            .map(stage -> project.stats(stage).row(name, stage));
+    }
+
+    private static String table(Stream<String[]> rows) {
+        final List<String[]> table = Stream.concat(Stream.<String[]>of(CSV_HEADER), rows)
+            .collect(Collectors.toList());
+        final int[] widths = new int[CSV_HEADER.length];
+        for (String[] row : table) {
+            for (int ci = 0; ci < row.length; ci++) {
+                widths[ci] = Math.max(widths[ci], row[ci].length());
+            }
+        }
+        return table.stream()
+            .map(row -> {
+                final StringBuilder line = new StringBuilder();
+                for (int ci = 0; ci < row.length; ci++) {
+                    line.append(String.format(
+                        ci < 2 ? "%-" + widths[ci] + "s " : "%" + widths[ci] + "s ", row[ci]
+                    ));
+                }
+                return line.toString();
+            })
+            .collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * Restores the project scope in effect before {@link #project(String)}.
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static class Project {
+        final String name;
+        final AtomicReferenceArray<Stats> stats = new AtomicReferenceArray<>(
+            Stage.values().length
+        );
+
+        Project(String name) {
+            this.name = name;
+        }
+
+        Stats stats(Stage stage) {
+            final Stats existing = stats.get(stage.ordinal());
+            if (existing != null) {
+                return existing;
+            }
+            stats.compareAndSet(stage.ordinal(), null, new Stats());
+            return stats.get(stage.ordinal());
+        }
+    }
+
+    private static class Stats {
+        final Histogram latencies = new Histogram();
+        final LongAdder bytes = new LongAdder();
+
+        void record(long nanos, long processed) {
+            latencies.record(nanos);
+            bytes.add(processed);
+        }
+
+        String[] row(String name, Stage stage) {
+            final long totalNanos = latencies.sum();
+            final long totalBytes = bytes.sum();
+            return new String[] {
+                name,
+                stage.name(),
+                Long.toString(latencies.count()),
+                millis(latencies.min()),
+                millis(latencies.quantile(0.5)),
+                millis(latencies.quantile(0.9)),
+                millis(latencies.quantile(0.99)),
+                millis(latencies.quantile(0.999)),
+                millis(latencies.max()),
+                millis(totalNanos),
+                Long.toString(totalBytes),
+                totalBytes == 0 || totalNanos == 0
+                    ? ""
+                    : String.format(Locale.ROOT, "%.2f", totalBytes / 1e6 / (totalNanos / 1e9))
+            };
+        }
+
+        private static String millis(long nanos) {
+            return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+        }
+    }
+}
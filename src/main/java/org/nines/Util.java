@@ -17,8 +17,10 @@ package org.nines;
 
 import okhttp3.OkHttpClient;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
@@ -28,6 +30,9 @@ import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
 import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.net.ssl.SSLContext;
@@ -63,6 +68,50 @@ public class Util {
                 .collect(Collectors.joining(delimiter));
     }
 
+    /**
+     * Looks up a configuration setting, preferring the environment over system properties.
+     *
+     * @param environmentVariable the name of the environment variable, e.g. <code>ARC_X</code>
+     * @param systemProperty the name of the system property, e.g. <code>arc.x</code>
+     * @return the configured, non-empty value if any
+     */
+    public static Optional<String> config(String environmentVariable, String systemProperty) {
+        return Stream.of(System.getenv(environmentVariable), System.getProperty(systemProperty))
+            .filter(s -> s != null)
+            .map(String::trim).filter(s -> !s.isEmpty())
+            .findFirst();
+    }
+
+    /**
+     * Parses a size in bytes, e.g. <code>512</code>, <code>64M</code> or <code>2GB</code>.
+     *
+     * @param size a number followed by an optional, case-insensitive unit <code>K</code>,
+     *     <code>M</code>, <code>G</code> or <code>T</code> (binary multiples)
+     * @return the number of bytes
+     * @throws IllegalArgumentException if the size cannot be parsed
+     */
+    public static long bytes(String size) {
+        final Matcher matcher = SIZE.matcher(size.trim().toLowerCase());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(size);
+        }
+        final long value = Long.parseLong(matcher.group(1));
+        switch (matcher.group(2)) {
+            case "k":
+                return value << 10;
+            case "m":
+                return value << 20;
+            case "g":
+                return value << 30;
+            case "t":
+                return value << 40;
+            default:
+                return value;
+        }
+    }
+
+    private static final Pattern SIZE = Pattern.compile("(\\d+)\\s*([kmgt]?)b?");
+
     /**
      * Configures a HTTP client to trust any SSL/TLS peer.
      *
@@ -92,6 +141,21 @@ public class Util {
 
     };
 
+    /**
+     * Reads a stream to its end.
+     *
+     * @param stream the stream to read
+     * @return the bytes read
+     */
+    public static byte[] toByteArray(InputStream stream) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buf = new byte[8192];
+        for (int read = stream.read(buf); read >= 0; read = stream.read(buf)) {
+            bytes.write(buf, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
     /**
      * Deletes a directory recursively.
      *
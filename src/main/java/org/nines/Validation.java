@@ -0,0 +1,481 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import au.com.bytecode.opencsv.CSVWriter;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdfxml.xmlinput.FatalParsingErrorException;
+import org.apache.jena.rdfxml.xmlinput.ParseException;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Validation of RDF/XML sources against XML and RDF syntax as well as ARC's schema.
+ *
+ * <p>Each file is read once: it is parsed by Jena's RDF/XML parser, which reports XML and RDF
+ * syntax errors, while its records are {@link StreamingSchemaValidator validated} against the
+ * schema.</p>
+ */
+public class Validation {
+
+    private static final Logger LOG = Logging.forClass(Validation.class);
+
+    public static final String[] CSV_HEADER = {
+        "File", "Check", "Line/Column", "Resource", "Property", "Value", "Error", "Link"
+    };
+
+    private static final Pattern WHITESPACE_RUNS = Pattern.compile("\\s+");
+
+    private static final Metrics.Counters ERRORS = Metrics.counters(
+        "arc_validation_errors_total", "XML, RDF and I/O errors reported", "check"
+    );
+
+    private static final Metrics.Counter[] SCHEMA_ERRORS = schemaErrors();
+
+    private final Workspace workspace;
+    private final ErrorSink errorSink;
+    private final LongAdder subjects = new LongAdder();
+
+    public Validation(Workspace workspace) {
+        this(workspace, null);
+    }
+
+    /**
+     * Creates a validation whose schema errors are aggregated instead of being reported per file.
+     *
+     * @param workspace the workspace containing the files to validate
+     * @param errorSink the sink receiving schema errors, <code>null</code> to report them as
+     *     rows of the per-file results
+     */
+    public Validation(Workspace workspace, ErrorSink errorSink) {
+        this.workspace = workspace;
+        this.errorSink = errorSink;
+    }
+
+    /**
+     * Validates a RDF/XML file.
+     *
+     * @param rdfProject the project containing the file
+     * @param rdfFile the file to validate
+     * @return the report rows describing errors found in the file, in the order found; schema
+     *     errors are only included if they are not aggregated in an {@link ErrorSink}
+     */
+    public List<String[]> validate(RdfProject rdfProject, File rdfFile) {
+        final List<String[]> rows = new ArrayList<>();
+        validate(rdfProject, rdfFile, rows(rdfProject, rdfFile, rows));
+        return rows;
+    }
+
+    /**
+     * Validates a RDF/XML file, passing the errors found to a receiver.
+     *
+     * @param rdfProject the project containing the file
+     * @param rdfFile the file to validate
+     * @param findings receives the errors found in the file, in the order found; schema errors
+     *     are only passed on if they are not aggregated in an {@link ErrorSink}
+     */
+    public void validate(RdfProject rdfProject, File rdfFile, Findings findings) {
+        final String path = workspace.relativize(rdfFile.toPath()).toString();
+
+        final ParseErrors parseErrors = new ParseErrors((e, prefix) -> parseError(
+            findings, e, prefix
+        ));
+
+        final SchemaValidator.Errors reported = errorSink == null
+            ? (subject, property, value, code) -> findings.schemaError(
+                subject.toString(),
+                Optional.ofNullable(property).map(Property::toString).orElse(""),
+                Optional.ofNullable(value).map(RDFNode::toString).orElse(""),
+                code
+            )
+            : errorSink.forFile(path);
+        final SchemaValidator.Errors schemaErrors = (subject, property, value, code) -> {
+            SCHEMA_ERRORS[code.ordinal()].inc();
+            reported.error(subject, property, value, code);
+        };
+
+        final StreamingSchemaValidator validator = new StreamingSchemaValidator(
+            SchemaValidator.forProject(rdfProject)
+        );
+        try (
+            Accounting.FileAccount account = Accounting.file(
+                rdfProject.git.gitLabProject.name, path, rdfFile.length()
+            );
+            InputStream rdf = new BufferedInputStream(Files.newInputStream(rdfFile.toPath()))
+        ) {
+            account.begin();
+            subjects.add(validator.validate(
+                rdf, rdfFile.toURI().toString(), parseErrors, schemaErrors
+            ));
+            account.end(Accounting.Phase.VALIDATE);
+        } catch (SAXParseException e) {
+            // fatal errors are usually reported to the handler before being thrown
+            if (!parseErrors.reported(e)) {
+                parseError(findings, e, "");
+            }
+        } catch (FatalParsingErrorException e) {
+            // parsing has been aborted after reporting a fatal error to the handler
+        } catch (IOException | SAXException | RuntimeException e) {
+            LOG.log(Level.WARNING, e, rdfFile::toString);
+            ERRORS.labels("io").inc();
+            findings.ioError(format(e.toString()));
+        }
+    }
+
+    /**
+     * Renders the errors found in a file as report rows.
+     *
+     * @param rdfProject the project containing the file
+     * @param rdfFile the validated file
+     * @param rows the list receiving rows matching {@link #CSV_HEADER}
+     * @return a receiver adding a row per error to the list
+     */
+    public Findings rows(RdfProject rdfProject, File rdfFile, List<String[]> rows) {
+        final String path = workspace.relativize(rdfFile.toPath()).toString();
+        final String link = gitLabUrl(rdfProject, rdfFile, -1);
+        return new Findings() {
+            @Override
+            public void schemaError(String subject, String property, String value,
+                                    ErrorCode code) {
+                rows.add(new String[] {
+                    path, "schema", "", subject, property, value, code.message, link
+                });
+            }
+
+            @Override
+            public void parseError(String check, int line, int column, String message) {
+                rows.add(new String[] {
+                    path,
+                    check,
+                    String.format("[%s:%s]", line, column),
+                    "",
+                    "",
+                    "",
+                    message,
+                    gitLabUrl(rdfProject, rdfFile, line)
+                });
+            }
+
+            @Override
+            public void ioError(String message) {
+                rows.add(new String[] { path, "io", "", "", "", "", message, link });
+            }
+        };
+    }
+
+    /**
+     * The number of RDF subjects validated in files without fatal errors.
+     */
+    public long subjects() {
+        return subjects.sum();
+    }
+
+    private static Metrics.Counter[] schemaErrors() {
+        final Metrics.Counters counters = Metrics.counters(
+            "arc_schema_errors_total", "Schema errors reported", "code"
+        );
+        return Stream.of(ErrorCode.values())
+            .map(code -> counters.labels(code.name()))
+            .toArray(Metrics.Counter[]::new);
+    }
+
+    private static void parseError(Findings findings, SAXParseException e, String prefix) {
+        final String check = e instanceof ParseException ? "rdf" : "xml";
+        ERRORS.labels(check).inc();
+        findings.parseError(
+            check, e.getLineNumber(), e.getColumnNumber(), prefix + format(e.getMessage())
+        );
+    }
+
+    /**
+     * Receives the errors found in a file.
+     */
+    public interface Findings {
+
+        /**
+         * Receives a schema error.
+         *
+         * @param subject the URI of the subject in error
+         * @param property the URI of the property in error, empty if not applicable
+         * @param value the value in error, empty if not applicable
+         * @param code the kind of error
+         */
+        void schemaError(String subject, String property, String value, ErrorCode code);
+
+        /**
+         * Receives an XML or RDF syntax error.
+         *
+         * @param check <code>xml</code> or <code>rdf</code>
+         * @param line the line of the error
+         * @param column the column of the error
+         * @param message the error message
+         */
+        void parseError(String check, int line, int column, String message);
+
+        /**
+         * Receives a failure to read a file, which may not recur.
+         *
+         * @param message the error message
+         */
+        void ioError(String message);
+    }
+
+    /**
+     * Collects XML and RDF syntax errors, marking warnings as such.
+     */
+    private static class ParseErrors implements ErrorHandler {
+
+        private final BiConsumer<SAXParseException, String> errors;
+        private SAXParseException last;
+
+        ParseErrors(BiConsumer<SAXParseException, String> errors) {
+            this.errors = errors;
+        }
+
+        @Override
+        public void warning(SAXParseException exception) {
+            errors.accept(exception, "Warning - ");
+        }
+
+        @Override
+        public void error(SAXParseException exception) {
+            handle(exception);
+        }
+
+        @Override
+        public void fatalError(SAXParseException exception) {
+            handle(exception);
+        }
+
+        private void handle(SAXParseException e) {
+            last = e;
+            errors.accept(e, "");
+        }
+
+        boolean reported(SAXParseException e) {
+            return last != null && (last == e || (last.getLineNumber() == e.getLineNumber()
+                && last.getColumnNumber() == e.getColumnNumber()
+                && Objects.equals(last.getMessage(), e.getMessage())));
+        }
+    }
+
+    private static String format(String message) {
+        message = WHITESPACE_RUNS.matcher(String.valueOf(message)).replaceAll(" ");
+        return message.length() > 200 ? String.format("%s...", message.substring(0, 197)) : message;
+    }
+
+    private static String gitLabUrl(RdfProject rdfProject, File rdfFile, int lineNumber) {
+        final String path = Git.gitPath(rdfProject.git.relativize(rdfFile.toPath()));
+        return lineNumber < 0
+            ? rdfProject.git.gitLabProject.url("master", path).toString()
+            : rdfProject.git.gitLabProject.url("master", path, lineNumber).toString();
+    }
+
+    /**
+     * Entry point into the validation tool.
+     *
+     * <p>All RDF/XML sources contained in ARC's GitLab are validated on a pool of
+     * <code>$ARC_VALIDATION_THREADS</code>/ <code>-Darc.validation.threads</code> threads
+     * (defaulting to the number of processors). Errors are written to the CSV file
+     * <code>$ARC_VALIDATION_REPORT</code>/ <code>-Darc.validation.report</code> (defaulting to
+     * <code>arc-validation-errors.csv</code>).</p>
+     *
+     * <p>With <code>$ARC_VALIDATION_SUMMARY</code>/ <code>-Darc.validation.summary</code> set to
+     * the path of a CSV file, schema errors are {@link ErrorSink aggregated} and counted per
+     * file, property and error instead. In this case, only up to
+     * <code>$ARC_VALIDATION_DETAILS</code>/ <code>-Darc.validation.details</code> (default:
+     * 10000) distinct schema errors are listed in the report.</p>
+     *
+     * <p>Otherwise results are kept in a {@link ValidationCache cache} in the workspace, and
+     * only files changed since the last run or failing to be read are validated again, unless
+     * <code>$ARC_VALIDATION_CACHE=false</code>/ <code>-Darc.validation.cache=false</code>.</p>
+     *
+     * <p>At most <code>$ARC_VALIDATION_BACKLOG</code>/ <code>-Darc.validation.backlog</code>
+     * files (default: 1024) are validated or awaiting output at any time. With
+     * <code>$ARC_VALIDATION_ORDERED=true</code>/ <code>-Darc.validation.ordered=true</code>,
+     * the report lists projects in the order they are cloned and their files sorted by path;
+     * otherwise files are reported as soon as they have been validated.</p>
+     *
+     * <p>{@link Progress} is logged every <code>$ARC_PROGRESS_INTERVAL</code>/
+     * <code>-Darc.progress.interval</code> seconds (default: 60).</p>
+     *
+     * <p>With <code>$ARC_ACCOUNTING=true</code>/ <code>-Darc.accounting=true</code>, memory
+     * allocation and CPU time per file are {@link Accounting accounted} for.</p>
+     *
+     * <p>{@link Metrics} are exposed via <code>$ARC_METRICS_PORT</code> and/or
+     * <code>$ARC_METRICS_FILE</code>.</p>
+     *
+     * @see CsvReport
+     */
+    public static void main(String[] args) throws Exception {
+        final long start = System.currentTimeMillis();
+
+        Logging.configure();
+        final Closeable exposition = Metrics.expose();
+
+        try {
+            final int threads = Util.config("ARC_VALIDATION_THREADS", "arc.validation.threads")
+                .map(Integer::parseInt)
+                .orElse(Runtime.getRuntime().availableProcessors());
+            final int backlog = Util.config("ARC_VALIDATION_BACKLOG", "arc.validation.backlog")
+                .map(Integer::parseInt)
+                .orElse(1024);
+            final boolean ordered = Util.config("ARC_VALIDATION_ORDERED", "arc.validation.ordered")
+                .map(Boolean::parseBoolean)
+                .orElse(false);
+            final String reportPath = Util.config("ARC_VALIDATION_REPORT", "arc.validation.report")
+                .orElse("arc-validation-errors.csv");
+            final Optional<String> summaryPath = Util.config(
+                "ARC_VALIDATION_SUMMARY", "arc.validation.summary"
+            );
+            final ErrorSink errorSink = summaryPath.isPresent()
+                ? new ErrorSink(Util.config("ARC_VALIDATION_DETAILS", "arc.validation.details")
+                    .map(Integer::parseInt)
+                    .orElse(10000))
+                : null;
+
+            final Arc arc = new Arc();
+            final Workspace workspace = new Workspace(arc);
+            final Validation validation = new Validation(workspace, errorSink);
+            final Progress progress = Progress.configured("validation", validation::subjects);
+            final Arc.GitLabProject[] gitLabProjects = arc.rdfRepositories();
+            progress.expectProjects(gitLabProjects.length);
+            final boolean cached = errorSink == null
+                && Util.config("ARC_VALIDATION_CACHE", "arc.validation.cache")
+                    .map(Boolean::parseBoolean)
+                    .orElse(true);
+            final ValidationCache cache = cached
+                ? ValidationCache.open(workspace, "validation", SchemaValidator.VERSION)
+                : null;
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()
+            );
+            final CsvReport report = new CsvReport(
+                Paths.get(reportPath), CSV_HEADER, backlog, ordered
+            );
+            final Metrics.Gauges queues = Metrics.gauges(
+                "arc_queue_depth", "Tasks waiting in queues", "queue"
+            );
+            queues.register(() -> executor.getQueue().size(), "validation");
+            queues.register(report::pending, "report");
+            try {
+                workspace.projects(gitLabProjects).forEach(rdfProject -> {
+                    final String project = rdfProject.git.gitLabProject.name;
+                    final List<File> rdfFiles = (ordered
+                        ? rdfProject.rdfFiles().sorted()
+                        : rdfProject.rdfFiles()).collect(Collectors.toList());
+                    progress.inventory(project, rdfFiles);
+                    if (rdfFiles.isEmpty()) {
+                        progress.completed(project);
+                    }
+                    final AtomicInteger remaining = new AtomicInteger(rdfFiles.size());
+                    for (File rdfFile : rdfFiles) {
+                        final long sequence = report.reserve();
+                        executor.execute(() -> {
+                            final List<String[]> rows = new ArrayList<>();
+                            try {
+                                final Findings findings = validation.rows(
+                                    rdfProject, rdfFile, rows
+                                );
+                                if (cache == null) {
+                                    validation.validate(rdfProject, rdfFile, findings);
+                                } else {
+                                    cache.validate(rdfFile, (f, receiver) -> validation.validate(
+                                        rdfProject, f, receiver
+                                    ), findings);
+                                }
+                            } finally {
+                                report.submit(sequence, rows);
+                                progress.processed(project, rdfFile.length());
+                                if (remaining.decrementAndGet() == 0) {
+                                    progress.completed(project);
+                                }
+                            }
+                        });
+                    }
+                    LOG.fine(() -> String.format("? %s", rdfProject));
+                });
+                executor.shutdown();
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+
+                if (errorSink != null) {
+                    errorSink.records().forEach(record -> {
+                        final String[] text = errorSink.text(record);
+                        report.submit(report.reserve(), Collections.singletonList(new String[] {
+                            text[0], "schema", "", text[1], text[2], text[3], text[4], ""
+                        }));
+                    });
+                    try (CSVWriter summary = new CSVWriter(Files.newBufferedWriter(
+                        Paths.get(summaryPath.get()), StandardCharsets.UTF_8
+                    ))) {
+                        summary.writeNext(ErrorSink.SUMMARY_HEADER);
+                        errorSink.summary().forEach(summary::writeNext);
+                    }
+                    LOG.info(() -> String.format(
+                        "! %d schema error(s) in %s", errorSink.total(), summaryPath.get()
+                    ));
+                }
+                if (Accounting.enabled()) {
+                    Accounting.writeReport(LOG);
+                }
+            } finally {
+                executor.shutdownNow();
+                progress.close();
+                report.close();
+                if (cache != null) {
+                    cache.close();
+                    LOG.info(() -> String.format(
+                        "! %d file(s) validated, %d cached", cache.misses(), cache.hits()
+                    ));
+                }
+            }
+
+            LOG.info(() -> String.format("! %d error(s) in %s", report.rows(), reportPath));
+        } finally {
+            exposition.close();
+        }
+        final long end = System.currentTimeMillis();
+        LOG.info(() -> String.format(". %s", Duration.ofMillis(end - start)));
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent cache of validation results per file.
+ *
+ * <p>For each file validated in a workspace, the cache stores its size, modification time,
+ * SHA-256 content hash and the errors found, in compact form: schema errors by
+ * {@link ErrorCode error code} and syntax errors by position, referring to strings interned
+ * across all files. Report rows are rebuilt from these {@link Validation.Findings findings}
+ * when files are reported. Files whose size and modification time are unchanged, or whose
+ * content hash is unchanged, are not validated again; their cached findings are reported
+ * instead. A cache is bound to a validator version: if the version changes, e.g. because a
+ * vocabulary has been extended, all cached results are discarded, just like those of a cache
+ * which cannot be read.</p>
+ *
+ * <p>Results reporting read errors are not cached, as those may not recur. Entries of files
+ * which have not been looked up since the cache was opened, e.g. because the files have been
+ * deleted, are dropped when it is closed.</p>
+ */
+public class ValidationCache implements Closeable {
+
+    private static final Logger LOG = Logging.forClass(ValidationCache.class);
+
+    private static final int MAGIC = 0x41524356;
+
+    private static final int FORMAT = 2;
+
+    private static final int MAX_LENGTH = 1 << 24;
+
+    private static final Finding[] NONE = {};
+
+    private final Workspace workspace;
+    private final Path file;
+    private final String version;
+    private final Interner strings = new Interner();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> visited = ConcurrentHashMap.newKeySet();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private ValidationCache(Workspace workspace, Path file, String version) {
+        this.workspace = workspace;
+        this.file = file;
+        this.version = version;
+    }
+
+    /**
+     * Loads a validation cache of a workspace, starting with an empty one if none exists yet,
+     * if the existing one was written for a different validator version or if it cannot be
+     * read.
+     *
+     * @param workspace the workspace in whose directory the cache is kept
+     * @param name the name of the cache, distinguishing different kinds of validation
+     * @param version the version of the validator
+     * @return the cache, to be closed for persisting it
+     */
+    public static ValidationCache open(Workspace workspace, String name, String version) {
+        final Path file = workspace.directory.toPath().resolve(
+            String.format(".arc-validation-cache-%s.bin.gz", name)
+        );
+        final ValidationCache cache = new ValidationCache(workspace, file, version);
+        if (Files.isRegularFile(file)) {
+            try {
+                cache.load();
+            } catch (IOException | RuntimeException e) {
+                LOG.log(Level.WARNING, e, () -> String.format("~ %s unreadable, rebuilding", file));
+                cache.entries.clear();
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Reports the cached findings of a file, validating it in case of a cache miss and caching
+     * its findings unless they include a read error.
+     *
+     * @param rdfFile the file
+     * @param validation validates the file, passing its findings to the given receiver
+     * @param findings receives the (cached) findings
+     */
+    public void validate(File rdfFile, BiConsumer<File, Validation.Findings> validation,
+                         Validation.Findings findings) {
+        final String path = workspace.relativize(rdfFile.toPath()).toString();
+        visited.add(path);
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(
+                rdfFile.toPath(), BasicFileAttributes.class
+            );
+            final long size = attributes.size();
+            final long modified = attributes.lastModifiedTime().toMillis();
+
+            final Entry cached = entries.get(path);
+            if (cached != null && cached.size == size && cached.modified == modified) {
+                hits.increment();
+                cached.report(findings, strings);
+                return;
+            }
+
+            final byte[] hash = hash(rdfFile);
+            if (cached != null && cached.size == size && Arrays.equals(cached.hash, hash)) {
+                entries.put(path, new Entry(size, modified, hash, cached.findings));
+                hits.increment();
+                cached.report(findings, strings);
+                return;
+            }
+
+            misses.increment();
+            final Recorder recorder = new Recorder(findings);
+            validation.accept(rdfFile, recorder);
+            if (recorder.failed) {
+                entries.remove(path);
+            } else {
+                entries.put(path, new Entry(size, modified, hash, recorder.findings()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The number of files whose results have been taken from the cache.
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * The number of files which have been validated due to a cache miss.
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Drops the entries of files not looked up since the cache was opened and persists the
+     * cache.
+     */
+    @Override
+    public void close() throws IOException {
+        final int evicted = entries.size();
+        entries.keySet().retainAll(visited);
+        LOG.fine(() -> String.format("- %s: %d entries evicted", file, evicted - entries.size()));
+
+        final Path update = Files.createTempFile(file.getParent(), file.getFileName().toString(),
+            ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(update))
+        ))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            writeString(out, version);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                writeString(out, entry.getKey());
+                entry.getValue().write(out, strings);
+            }
+        }
+        Files.move(update, file,
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOG.fine(() -> String.format(
+            "+ %s: %d entries (%d hit(s), %d miss(es))", file, entries.size(), hits(), misses()
+        ));
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(
+            new BufferedInputStream(Files.newInputStream(file))
+        ))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT
+                || !version.equals(readString(in))) {
+                LOG.fine(() -> String.format("- %s (outdated)", file));
+                return;
+            }
+            for (int ei = 0, ec = readLength(in); ei < ec; ei++) {
+                entries.put(readString(in), Entry.read(in, strings));
+            }
+        }
+        LOG.fine(() -> String.format("< %s: %d entries", file, entries.size()));
+    }
+
+    private static byte[] hash(File file) throws IOException {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(
+                Files.newInputStream(file.toPath()), digest
+            )) {
+                final byte[] buf = new byte[8192];
+                while (in.read(buf) >= 0) {
+                    // digesting
+                }
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a length or count, guarding against allocations based on corrupt data.
+     */
+    private static int readLength(DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IOException(String.format("Invalid length: %d", length));
+        }
+        return length;
+    }
+
+    private static class Entry {
+        final long size;
+        final long modified;
+        final byte[] hash;
+        final Finding[] findings;
+
+        Entry(long size, long modified, byte[] hash, Finding[] findings) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.findings = findings;
+        }
+
+        void report(Validation.Findings receiver, Interner strings) {
+            for (Finding finding : findings) {
+                finding.report(receiver, strings);
+            }
+        }
+
+        void write(DataOutputStream out, Interner strings) throws IOException {
+            out.writeLong(size);
+            out.writeLong(modified);
+            out.writeInt(hash.length);
+            out.write(hash);
+            out.writeInt(findings.length);
+            for (Finding finding : findings) {
+                finding.write(out, strings);
+            }
+        }
+
+        static Entry read(DataInputStream in, Interner strings) throws IOException {
+            final long size = in.readLong();
+            final long modified = in.readLong();
+            final byte[] hash = new byte[readLength(in)];
+            in.readFully(hash);
+            final int count = readLength(in);
+            final Finding[] findings = count == 0 ? NONE : new Finding[count];
+            for (int fi = 0; fi < count; fi++) {
+                findings[fi] = Finding.read(in, strings);
+            }
+            return new Entry(size, modified, hash, findings);
+        }
+    }
+
+    /**
+     * An error found in a file, in compact form: a schema error if it has an error code, a
+     * syntax error otherwise.
+     */
+    private static final class Finding {
+        final ErrorCode code;
+        final int first;
+        final int second;
+        final int third;
+        final int message;
+
+        /**
+         * @param code the error code of a schema error, <code>null</code> for a syntax error
+         * @param first the interned subject of a schema error or the line of a syntax error
+         * @param second the interned property of a schema error or the column of a syntax error
+         * @param third the interned value of a schema error or the interned check of a syntax
+         *     error
+         * @param message the interned message of a syntax error
+         */
+        Finding(ErrorCode code, int first, int second, int third, int message) {
+            this.code = code;
+            this.first = first;
+            this.second = second;
+            this.third = third;
+            this.message = message;
+        }
+
+        void report(Validation.Findings receiver, Interner strings) {
+            if (code != null) {
+                receiver.schemaError(
+                    strings.string(first), strings.string(second), strings.string(third), code
+                );
+            } else {
+                receiver.parseError(
+                    strings.string(third), first, second, strings.string(message)
+                );
+            }
+        }
+
+        void write(DataOutputStream out, Interner strings) throws IOException {
+            if (code != null) {
+                out.writeByte(code.ordinal());
+                writeString(out, strings.string(first));
+                writeString(out, strings.string(second));
+                writeString(out, strings.string(third));
+            } else {
+                out.writeByte(-1);
+                out.writeInt(first);
+                out.writeInt(second);
+                writeString(out, strings.string(third));
+                writeString(out, strings.string(message));
+            }
+        }
+
+        static Finding read(DataInputStream in, Interner strings) throws IOException {
+            final int code = in.readByte();
+            if (code >= 0) {
+                return new Finding(
+                    ErrorCode.values()[code],
+                    strings.id(readString(in)),
+                    strings.id(readString(in)),
+                    strings.id(readString(in)),
+                    -1
+                );
+            }
+            return new Finding(
+                null,
+                in.readInt(),
+                in.readInt(),
+                strings.id(readString(in)),
+                strings.id(readString(in))
+            );
+        }
+    }
+
+    /**
+     * Passes findings on while recording them in compact form.
+     */
+    private class Recorder implements Validation.Findings {
+
+        private final Validation.Findings receiver;
+        private final List<Finding> findings = new ArrayList<>();
+        private boolean failed;
+
+        Recorder(Validation.Findings receiver) {
+            this.receiver = receiver;
+        }
+
+        @Override
+        public void schemaError(String subject, String property, String value,
+                                ErrorCode code) {
+            findings.add(new Finding(
+                code, strings.id(subject), strings.id(property), strings.id(value), -1
+            ));
+            receiver.schemaError(subject, property, value, code);
+        }
+
+        @Override
+        public void parseError(String check, int line, int column, String message) {
+            findings.add(new Finding(
+                null, line, column, strings.id(check), strings.id(message)
+            ));
+            receiver.parseError(check, line, column, message);
+        }
+
+        @Override
+        public void ioError(String message) {
+            failed = true;
+            receiver.ioError(message);
+        }
+
+        Finding[] findings() {
+            return findings.isEmpty() ? NONE : findings.toArray(NONE);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * An immutable set of terms, compiled into a minimal perfect hash table.
+ *
+ * <p>Terms are placed via hash-and-displace: a first hash assigns each term to a bucket, and
+ * per bucket a displacement seed is searched for, which maps all terms of the bucket to
+ * distinct free slots of a table with exactly one slot per term. A lookup thus computes two
+ * hashes and compares a candidate against at most one term. Lookups operate on any
+ * {@link CharSequence} or on a region of a <code>char</code> buffer, so terms can be probed
+ * without creating strings.</p>
+ */
+public final class Vocabulary {
+
+    private final char[][] terms;
+    private final int[] seeds;
+
+    private Vocabulary(char[][] terms, int[] seeds) {
+        this.terms = terms;
+        this.seeds = seeds;
+    }
+
+    /**
+     * Compiles a set of terms.
+     *
+     * @param terms the terms
+     * @return the vocabulary
+     */
+    public static Vocabulary of(Collection<String> terms) {
+        final List<String> distinct = new ArrayList<>(new LinkedHashSet<>(terms));
+        final int size = distinct.size();
+        if (size == 0) {
+            return new Vocabulary(new char[0][], new int[] { 0 });
+        }
+
+        final List<List<String>> buckets = new ArrayList<>();
+        for (int bi = 0, bc = (size + 1) / 2; bi < bc; bi++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (String term : distinct) {
+            buckets.get(slot(hash(term, 0), buckets.size())).add(term);
+        }
+
+        final Integer[] order = new Integer[buckets.size()];
+        for (int bi = 0; bi < order.length; bi++) {
+            order[bi] = bi;
+        }
+        Arrays.sort(order, (a, b) -> buckets.get(b).size() - buckets.get(a).size());
+
+        final char[][] table = new char[size][];
+        final int[] seeds = new int[buckets.size()];
+        final int[] slots = new int[size];
+        for (int bi : order) {
+            final List<String> bucket = buckets.get(bi);
+            if (bucket.isEmpty()) {
+                continue;
+            }
+            for (int seed = 1; ; seed++) {
+                if (place(bucket, seed, table, slots)) {
+                    seeds[bi] = seed;
+                    break;
+                }
+            }
+        }
+        return new Vocabulary(table, seeds);
+    }
+
+    private static boolean place(List<String> bucket, int seed, char[][] table, int[] slots) {
+        for (int ti = 0; ti < bucket.size(); ti++) {
+            final int slot = slot(hash(bucket.get(ti), seed), table.length);
+            if (table[slot] != null) {
+                return false;
+            }
+            for (int si = 0; si < ti; si++) {
+                if (slots[si] == slot) {
+                    return false;
+                }
+            }
+            slots[ti] = slot;
+        }
+        for (int ti = 0; ti < bucket.size(); ti++) {
+            table[slots[ti]] = bucket.get(ti).toCharArray();
+        }
+        return true;
+    }
+
+    /**
+     * Tests whether a term is part of this vocabulary.
+     *
+     * @param term the term
+     * @return <code>true</code> if the vocabulary contains the term
+     */
+    public boolean contains(CharSequence term) {
+        if (terms.length == 0) {
+            return false;
+        }
+        final int seed = seeds[slot(hash(term, 0), seeds.length)];
+        final char[] candidate = terms[slot(hash(term, seed), terms.length)];
+        if (candidate.length != term.length()) {
+            return false;
+        }
+        for (int ci = 0; ci < candidate.length; ci++) {
+            if (candidate[ci] != term.charAt(ci)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests whether the term in a region of a character buffer is part of this vocabulary.
+     *
+     * @param buf the buffer
+     * @param offset the start of the term in the buffer
+     * @param length the length of the term
+     * @return <code>true</code> if the vocabulary contains the term
+     */
+    public boolean contains(char[] buf, int offset, int length) {
+        if (terms.length == 0) {
+            return false;
+        }
+        final int seed = seeds[slot(hash(buf, offset, length, 0), seeds.length)];
+        final char[] candidate = terms[slot(hash(buf, offset, length, seed), terms.length)];
+        if (candidate.length != length) {
+            return false;
+        }
+        for (int ci = 0; ci < length; ci++) {
+            if (candidate[ci] != buf[offset + ci]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The number of terms in this vocabulary.
+     */
+    public int size() {
+        return terms.length;
+    }
+
+    private static int hash(CharSequence term, int seed) {
+        int hash = 0x811c9dc5 ^ (seed * 0x9e3779b9);
+        for (int ci = 0, cl = term.length(); ci < cl; ci++) {
+            hash = (hash ^ term.charAt(ci)) * 0x01000193;
+        }
+        return mix(hash);
+    }
+
+    private static int hash(char[] buf, int offset, int length, int seed) {
+        int hash = 0x811c9dc5 ^ (seed * 0x9e3779b9);
+        for (int ci = offset, end = offset + length; ci < end; ci++) {
+            hash = (hash ^ buf[ci]) * 0x01000193;
+        }
+        return mix(hash);
+    }
+
+    private static int mix(int hash) {
+        hash ^= hash >>> 15;
+        hash *= 0x2c1b3c6d;
+        hash ^= hash >>> 12;
+        return hash;
+    }
+
+    private static int slot(int hash, int size) {
+        return (hash & Integer.MAX_VALUE) % size;
+    }
+}
@@ -3,13 +3,50 @@ package org.nines;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Filesystem directory serving as a workspace with Git repositories.
+ *
+ * <p>Repositories are cloned or fetched on a bounded pool of threads, sized via
+ * <code>$ARC_GIT_FETCH_THREADS</code>/ <code>-Darc.git.fetch.threads</code> (default: 4), and
+ * handed out as soon as they are available.</p>
  */
 public class Workspace {
 
+    private static final LongAdder PENDING_FETCHES = new LongAdder();
+
+    static {
+        Metrics.gauges("arc_queue_depth", "Tasks waiting in queues", "queue")
+            .register(PENDING_FETCHES::sum, "fetch");
+    }
+
+    private static final ThreadFactory FETCH_THREAD_FACTORY = new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(r, "git-fetch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
     public final File directory;
     private final Arc arc;
 
@@ -22,15 +59,171 @@ public class Workspace {
         this(arc, findWorkspace());
     }
 
+    /**
+     * Provides checked-out RDF projects in the order in which their clones complete.
+     *
+     * <p>Projects cloned before are used as they are, including local commits which have not
+     * been pushed. The resulting stream can be processed in parallel while remaining projects
+     * are still being cloned.</p>
+     *
+     * @see Git#clone(File, Arc.GitLabProject)
+     * @see Arc#rdfRepositories()
+     */
     public Stream<RdfProject> projects() throws IOException {
-        return Stream.of(arc.rdfRepositories())
-            .map(gitLabProject -> RdfProject.checkout(directory, gitLabProject));
+        return projects(arc.rdfRepositories());
+    }
+
+    /**
+     * Provides checked-out RDF projects from a list retrieved before, e.g. for counting them.
+     *
+     * @param gitLabProjects the projects to check out
+     * @see Workspace#projects()
+     */
+    public Stream<RdfProject> projects(Arc.GitLabProject[] gitLabProjects) {
+        return fetched(gitLabProjects, gitLabProject -> true,
+            gitLabProject -> new RdfProject(Git.clone(directory, gitLabProject)));
+    }
+
+    /**
+     * Provides checked-out RDF projects selected by a filter, with <code>master</code> reset to
+     * the head of its upstream branch, for migrating the latest upstream contents.
+     *
+     * <p>The filter is evaluated on the fetch pool before a project is cloned or fetched, so it
+     * may perform (remote) lookups itself.</p>
+     *
+     * @param gitLabProjects the projects to check out
+     * @param filter selects the projects to check out
+     * @see Git#cloneOrFetch(File, Arc.GitLabProject)
+     */
+    public Stream<RdfProject> updatedProjects(Arc.GitLabProject[] gitLabProjects,
+                                              Predicate<Arc.GitLabProject> filter) {
+        return fetched(gitLabProjects, filter,
+            gitLabProject -> new RdfProject(Git.cloneOrFetch(directory, gitLabProject)));
+    }
+
+    /**
+     * Provides bare clones of RDF projects selected by a filter, for migrations without a
+     * working tree.
+     *
+     * @param gitLabProjects the projects to clone
+     * @param filter selects the projects to clone, evaluated on the fetch pool
+     * @see InProcessGit#cloneBare(File, Arc.GitLabProject)
+     */
+    public Stream<InProcessGit> bareRepositories(Arc.GitLabProject[] gitLabProjects,
+                                                 Predicate<Arc.GitLabProject> filter) {
+        return fetched(gitLabProjects, filter, gitLabProject -> {
+            final boolean existing = new File(directory, gitLabProject.name + ".git").isDirectory();
+            final InProcessGit git = InProcessGit.cloneBare(directory, gitLabProject);
+            if (existing) {
+                git.fetch("master");
+            }
+            return git;
+        });
     }
 
     public Path relativize(Path path) {
         return directory.toPath().relativize(path);
     }
 
+    private static <T> Stream<T> fetched(Arc.GitLabProject[] gitLabProjects,
+                                         Predicate<Arc.GitLabProject> filter,
+                                         Function<Arc.GitLabProject, T> fetch) {
+        final ExecutorService fetchPool = Executors.newFixedThreadPool(
+            fetchThreads(), FETCH_THREAD_FACTORY
+        );
+        final CompletionService<T> completion = new ExecutorCompletionService<>(fetchPool);
+        for (Arc.GitLabProject gitLabProject : gitLabProjects) {
+            PENDING_FETCHES.increment();
+            completion.submit(() -> {
+                try {
+                    return filter.test(gitLabProject) ? timed(fetch, gitLabProject) : null;
+                } finally {
+                    PENDING_FETCHES.decrement();
+                }
+            });
+        }
+        fetchPool.shutdown();
+
+        return StreamSupport
+            .stream(new CompletionSpliterator<>(completion, gitLabProjects.length), false)
+            .filter(Objects::nonNull)
+            .onClose(fetchPool::shutdownNow);
+    }
+
+    @SuppressWarnings("try")
+    private static <T> T timed(Function<Arc.GitLabProject, T> fetch,
+                               Arc.GitLabProject gitLabProject) {
+        try (Timings.Scope scope = Timings.project(gitLabProject.name)) {
+            final long start = Timings.start();
+            final T fetched = fetch.apply(gitLabProject);
+            Timings.record(Timings.Stage.CLONE, start, 0);
+            return fetched;
+        }
+    }
+
+    private static int fetchThreads() {
+        return Util.config("ARC_GIT_FETCH_THREADS", "arc.git.fetch.threads")
+            .map(Integer::parseInt)
+            .orElse(4);
+    }
+
+    /**
+     * Hands out results of a completion service one at a time, so parallel streams start
+     * processing the first available result instead of waiting for a batch.
+     */
+    private static class CompletionSpliterator<T> implements Spliterator<T> {
+
+        private final CompletionService<T> completion;
+        private int remaining;
+
+        CompletionSpliterator(CompletionService<T> completion, int remaining) {
+            this.completion = completion;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (remaining == 0) {
+                return false;
+            }
+            action.accept(next());
+            return true;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (remaining <= 1) {
+                return null;
+            }
+            return Spliterators.spliterator(new Object[] { next() }, characteristics());
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining == 0 ? 0 : Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return 0;
+        }
+
+        private T next() {
+            remaining--;
+            try {
+                return completion.take().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                throw cause instanceof RuntimeException
+                    ? (RuntimeException) cause
+                    : new RuntimeException(cause);
+            }
+        }
+    }
+
     private static File findWorkspace() {
         final Stream<String> configSources = Stream.of(
             System.getenv("ARC_RDF_WORKSPACE"),
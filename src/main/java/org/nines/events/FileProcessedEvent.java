@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A RDF/XML file has been formatted or migrated.
+ */
+@Name("org.nines.FileProcessed")
+@Label("File Processed")
+@Category({ "ARC", "Migration" })
+@Description("A RDF/XML file has been formatted or migrated")
+public class FileProcessedEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Subjects")
+    public int subjects;
+
+    @Label("Changed")
+    public boolean changed;
+
+    @Label("DOM Parsing")
+    @Timespan
+    public long domParse;
+
+    @Label("RDF Parsing")
+    @Timespan
+    public long rdfParse;
+
+    @Label("Rule Application")
+    @Timespan
+    public long rules;
+
+    @Label("Serialization")
+    @Timespan
+    public long serialize;
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A page of results has been fetched from the GitLab API.
+ */
+@Name("org.nines.GitLabPage")
+@Label("GitLab API Page")
+@Category({ "ARC", "GitLab" })
+@Description("A page of results has been fetched from the GitLab API")
+public class GitLabPageEvent extends jdk.jfr.Event {
+
+    @Label("URL")
+    public String url;
+
+    @Label("Status")
+    public int status;
+
+    @Label("Latency")
+    @Description("Time between sending the request and receiving the response headers")
+    @Timespan(Timespan.MILLISECONDS)
+    public long latency;
+
+    @Label("Entries")
+    public int entries;
+
+    @Label("Matches")
+    public int matches;
+}
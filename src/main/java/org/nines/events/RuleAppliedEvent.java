@@ -0,0 +1,38 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A migration rule has changed a RDF subject.
+ */
+@Name("org.nines.RuleApplied")
+@Label("Rule Applied")
+@Category({ "ARC", "Migration" })
+@Description("A migration rule has changed a RDF subject")
+public class RuleAppliedEvent extends jdk.jfr.Event {
+
+    @Label("Rule")
+    @Description("Position of the rule in its rule set, starting at 1")
+    public int rule;
+
+    @Label("Subject")
+    public String subject;
+}
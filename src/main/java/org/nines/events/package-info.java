@@ -0,0 +1,23 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Java Flight Recorder events describing the processing of projects and files.
+ *
+ * <p>Events are created unconditionally and only populated and committed if
+ * {@link jdk.jfr.Event#shouldCommit() recorded}; without an active recording, their creation is
+ * optimized away.</p>
+ */
+package org.nines.events;
@@ -24,7 +24,7 @@ import java.util.Arrays;
  */
 public class AllOfSubjectFilter implements SubjectFilter {
 
-    private final SubjectFilter[] filters;
+    public final SubjectFilter[] filters;
 
     public AllOfSubjectFilter(SubjectFilter[] filters) {
         this.filters = filters;
@@ -24,7 +24,7 @@ import java.util.Arrays;
  */
 public class AnyOfSubjectFilter implements SubjectFilter {
 
-    private final SubjectFilter[] filters;
+    public final SubjectFilter[] filters;
 
     public AnyOfSubjectFilter(SubjectFilter[] filters) {
         this.filters = filters;
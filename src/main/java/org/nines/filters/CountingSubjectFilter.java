@@ -0,0 +1,125 @@
+/*
+ * Copyright © 2017 The Advanced Research Consortium - ARC (http://idhmcmain.tamu.edu/arcgrant/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nines.filters;
+
+import org.apache.jena.rdf.model.Resource;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * A subject filter counting the evaluations and matches of another.
+ *
+ * <p>{@link #instrument(SubjectFilter) Instrumenting} a filter wraps each node of its tree, so
+ * the number of child evaluations skipped by compound filters which short-circuit can be
+ * derived from the counts of their children.</p>
+ */
+public class CountingSubjectFilter implements SubjectFilter {
+
+    public final SubjectFilter filter;
+    public final CountingSubjectFilter[] children;
+
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+
+    private CountingSubjectFilter(SubjectFilter filter, CountingSubjectFilter[] children) {
+        this.filter = filter;
+        this.children = children;
+    }
+
+    /**
+     * Wraps all nodes of a filter tree in counting filters.
+     *
+     * <p>Children of {@link MultiValueSubjectFilter} are not wrapped, as it inspects their
+     * type.</p>
+     *
+     * @param filter the root of the tree
+     * @return the root of the instrumented tree
+     */
+    public static CountingSubjectFilter instrument(SubjectFilter filter) {
+        if (filter instanceof AllOfSubjectFilter) {
+            return compound(((AllOfSubjectFilter) filter).filters, AllOfSubjectFilter::new);
+        } else if (filter instanceof AnyOfSubjectFilter) {
+            return compound(((AnyOfSubjectFilter) filter).filters, AnyOfSubjectFilter::new);
+        } else if (filter instanceof NoneOfSubjectFilter) {
+            return compound(((NoneOfSubjectFilter) filter).filters, NoneOfSubjectFilter::new);
+        }
+        return new CountingSubjectFilter(filter, new CountingSubjectFilter[0]);
+    }
+
+    private static CountingSubjectFilter compound(SubjectFilter[] filters,
+                                                  Function<SubjectFilter[], SubjectFilter> type) {
+        final CountingSubjectFilter[] children = Stream.of(filters)
+            .map(CountingSubjectFilter::instrument)
+            .toArray(CountingSubjectFilter[]::new);
+        return new CountingSubjectFilter(type.apply(children), children);
+    }
+
+    @Override
+    public boolean appliesTo(Resource resource) {
+        evaluations.increment();
+        final boolean applies = filter.appliesTo(resource);
+        if (applies) {
+            matches.increment();
+        }
+        return applies;
+    }
+
+    /**
+     * The number of times this filter has been evaluated.
+     */
+    public long evaluations() {
+        return evaluations.sum();
+    }
+
+    /**
+     * The number of times this filter matched.
+     */
+    public long matches() {
+        return matches.sum();
+    }
+
+    /**
+     * The number of child evaluations skipped because a compound filter short-circuited.
+     */
+    public long skipped() {
+        long skipped = evaluations() * children.length;
+        for (CountingSubjectFilter child : children) {
+            skipped -= child.evaluations();
+        }
+        return skipped;
+    }
+
+    /**
+     * Describes this node, without its children.
+     */
+    public String label() {
+        if (filter instanceof AllOfSubjectFilter) {
+            return "(allOf ...)";
+        } else if (filter instanceof AnyOfSubjectFilter) {
+            return "(anyOf ...)";
+        } else if (filter instanceof NoneOfSubjectFilter) {
+            return "(noneOf ...)";
+        }
+        return filter.toString();
+    }
+
+    @Override
+    public String toString() {
+        return filter.toString();
+    }
+}
@@ -0,0 +1,99 @@
+package org.nines;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdmissionTest {
+
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+
+    @After
+    public void shutdown() {
+        threads.shutdownNow();
+    }
+
+    @Test
+    public void admitsInOrderOfRequests() throws Exception {
+        final Admission admission = new Admission(100, 1);
+
+        final Admission.Permit first = admission.acquire(60);
+        final Future<Admission.Permit> large = request(admission, 50);
+        awaitQueued(admission, 1);
+        final Future<Admission.Permit> small = request(admission, 10);
+        awaitQueued(admission, 2);
+
+        // the small file would fit, but must not overtake the large one
+        Thread.sleep(100);
+        assertFalse(large.isDone());
+        assertFalse(small.isDone());
+
+        first.close();
+        final Admission.Permit largePermit = large.get(10, TimeUnit.SECONDS);
+        final Admission.Permit smallPermit = small.get(10, TimeUnit.SECONDS);
+        assertEquals(60, admission.reservedBytes());
+        largePermit.close();
+        smallPermit.close();
+        assertEquals(0, admission.reservedBytes());
+    }
+
+    @Test
+    public void admitsFileExceedingTheBudgetAlone() throws Exception {
+        final Admission admission = new Admission(100, 2);
+
+        final Admission.Permit small = admission.acquire(10);
+        final Future<Admission.Permit> oversized = request(admission, 500);
+        awaitQueued(admission, 1);
+        Thread.sleep(100);
+        assertFalse(oversized.isDone());
+
+        small.close();
+        final Admission.Permit permit = oversized.get(10, TimeUnit.SECONDS);
+        assertEquals(1000, admission.reservedBytes());
+
+        final Future<Admission.Permit> next = request(admission, 1);
+        awaitQueued(admission, 1);
+        Thread.sleep(100);
+        assertFalse(next.isDone());
+
+        permit.close();
+        next.get(10, TimeUnit.SECONDS).close();
+        assertEquals(0, admission.reservedBytes());
+    }
+
+    @Test
+    public void releasesReservationOnClose() {
+        final Admission admission = new Admission(100, 2);
+
+        final Admission.Permit permit = admission.acquire(20);
+        assertEquals(40, admission.reservedBytes());
+        permit.close();
+        assertEquals(0, admission.reservedBytes());
+        permit.close();
+        assertEquals(0, admission.reservedBytes());
+
+        final Admission disabled = new Admission(0, 2);
+        disabled.acquire(Long.MAX_VALUE).close();
+        assertEquals(0, disabled.reservedBytes());
+    }
+
+    private Future<Admission.Permit> request(Admission admission, long size) {
+        return threads.submit(() -> admission.acquire(size));
+    }
+
+    private static void awaitQueued(Admission admission, long queued) throws Exception {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (admission.queued() != queued) {
+            assertTrue("requests not queued", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.nines;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+public class ArcTest {
+
+    @Rule
+    public TemporaryFolder cacheDirectory = new TemporaryFolder();
+
+    private MockWebServer gitLab;
+
+    @Before
+    public void startGitLab() throws IOException {
+        gitLab = new MockWebServer();
+        gitLab.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                final String page = page(request);
+                final String etag = String.format("\"page-%s\"", page);
+                if (etag.equals(request.getHeader("If-None-Match"))) {
+                    return new MockResponse().setResponseCode(304).setHeader("ETag", etag);
+                }
+                return new MockResponse()
+                    .setHeader("Content-Type", "application/json")
+                    .setHeader("Cache-Control", "max-age=0, private, must-revalidate")
+                    .setHeader("ETag", etag)
+                    .setHeader("X-Total-Pages", Integer.toString(PAGES))
+                    .setBody(projects(Integer.parseInt(page)));
+            }
+        });
+        gitLab.start();
+    }
+
+    @After
+    public void stopGitLab() throws IOException {
+        gitLab.shutdown();
+    }
+
+    @Test
+    public void fetchesAllPagesAndFiltersRdfRepositories() throws IOException {
+        final Arc arc = arc(Duration.ofHours(1));
+
+        final List<String> names = Arrays.stream(arc.rdfRepositories())
+            .map(gp -> gp.name)
+            .collect(Collectors.toList());
+
+        assertEquals(
+            IntStream.rangeClosed(1, PAGES).mapToObj(p -> "arc_rdf_" + p)
+                .sorted().collect(Collectors.toList()),
+            names
+        );
+        assertEquals(PAGES, gitLab.getRequestCount());
+        assertEquals(PAGES * PAGE_SIZE, arc.gitLabProjects().size());
+    }
+
+    @Test
+    public void answersWarmStartsFromCache() throws IOException {
+        arc(Duration.ofHours(1)).rdfRepositories();
+        final int requests = gitLab.getRequestCount();
+
+        assertEquals(PAGES, arc(Duration.ofHours(1)).rdfRepositories().length);
+        assertEquals(requests, gitLab.getRequestCount());
+    }
+
+    @Test
+    public void revalidatesExpiredCacheEntries() throws IOException, InterruptedException {
+        arc(Duration.ZERO).rdfRepositories();
+        for (int rc = gitLab.getRequestCount(); rc > 0; rc--) {
+            gitLab.takeRequest();
+        }
+
+        assertEquals(PAGES, arc(Duration.ZERO).rdfRepositories().length);
+        assertEquals(2 * PAGES, gitLab.getRequestCount());
+        for (int rc = 0; rc < PAGES; rc++) {
+            final RecordedRequest request = gitLab.takeRequest();
+            final String page = page(request);
+            assertEquals(String.format("\"page-%s\"", page), request.getHeader("If-None-Match"));
+        }
+    }
+
+    private Arc arc(Duration cacheTtl) {
+        return new Arc(gitLab.url("/api/v3/"), "token", cacheDirectory.getRoot(), cacheTtl);
+    }
+
+    private static String page(RecordedRequest request) {
+        return gitLabUrl(request).queryParameter("page");
+    }
+
+    private static HttpUrl gitLabUrl(RecordedRequest request) {
+        return HttpUrl.parse("http://localhost").resolve(request.getPath());
+    }
+
+    private static String projects(int page) {
+        return Stream.concat(
+            Stream.of(project("arc_rdf_" + page)),
+            IntStream.range(1, PAGE_SIZE)
+                .mapToObj(p -> project(String.format("other_%d_%d", page, p)))
+        ).collect(Collectors.joining(",", "[", "]"));
+    }
+
+    private static String project(String name) {
+        return String.format("{\"path\":\"%1$s\",\"path_with_namespace\":\"arc/%1$s\"}", name);
+    }
+
+    private static final int PAGES = 5;
+
+    private static final int PAGE_SIZE = 100;
+}
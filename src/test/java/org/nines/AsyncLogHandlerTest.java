@@ -0,0 +1,144 @@
+package org.nines;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncLogHandlerTest {
+
+    @Test
+    public void writesAllRecordsPublishedConcurrentlyBeforeClose() throws Exception {
+        final StringWriter out = new StringWriter();
+        final AsyncLogHandler handler = new AsyncLogHandler(THREADS * RECORDS, out);
+
+        final ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        for (int ti = 0; ti < THREADS; ti++) {
+            final int thread = ti;
+            threads.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int ri = 0; ri < RECORDS; ri++) {
+                    handler.publish(record(String.format("record %d/%d", thread, ri)));
+                }
+            });
+        }
+        start.countDown();
+        threads.shutdown();
+        assertTrue(threads.awaitTermination(10, TimeUnit.SECONDS));
+        handler.close();
+        handler.publish(record("after close"));
+
+        final List<String> messages = messages(out);
+        assertEquals(0, handler.dropped());
+        assertEquals(THREADS * RECORDS, messages.size());
+        assertEquals(
+            IntStream.range(0, THREADS).boxed()
+                .flatMap(t -> IntStream.range(0, RECORDS).mapToObj(r -> "record " + t + "/" + r))
+                .sorted().collect(Collectors.toList()),
+            messages.stream().sorted().collect(Collectors.toList())
+        );
+    }
+
+    @Test
+    public void dropsRecordsWhileTheRingIsFull() throws Exception {
+        final BlockingWriter out = new BlockingWriter();
+        final AsyncLogHandler handler = new AsyncLogHandler(4, out);
+
+        handler.publish(record("first"));
+        assertTrue(out.writing.await(10, TimeUnit.SECONDS));
+        for (int ri = 0; ri < 9; ri++) {
+            handler.publish(record("queued " + ri));
+        }
+        assertEquals(5, handler.dropped());
+
+        out.blocked.countDown();
+        handler.close();
+        assertEquals(
+            Arrays.asList(
+                "first", "queued 0", "queued 1", "queued 2", "queued 3",
+                "5 log record(s) dropped"
+            ),
+            messages(out.written)
+        );
+    }
+
+    @Test
+    public void formatsMessageParameters() {
+        final StringWriter out = new StringWriter();
+        final AsyncLogHandler handler = new AsyncLogHandler(4, out);
+
+        final LogRecord record = record("{0} of {1} file(s)");
+        record.setParameters(new Object[] { 3, "all" });
+        handler.publish(record);
+        handler.close();
+
+        assertEquals(Arrays.asList("3 of all file(s)"), messages(out));
+    }
+
+    private static LogRecord record(String message) {
+        final LogRecord record = new LogRecord(Level.INFO, message);
+        record.setLoggerName(AsyncLogHandlerTest.class.getName());
+        return record;
+    }
+
+    /**
+     * Strips the prefix of each line up to the thread name.
+     */
+    private static List<String> messages(StringWriter out) {
+        return Arrays.stream(out.toString().split(System.lineSeparator()))
+            .filter(line -> !line.isEmpty())
+            .map(line -> line.substring(line.indexOf("> ") + 2))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Blocks the consumer thread on its first write until released.
+     */
+    private static class BlockingWriter extends Writer {
+
+        final StringWriter written = new StringWriter();
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+
+        @Override
+        public void write(char[] buf, int off, int len) {
+            writing.countDown();
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.write(buf, off, len);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final int THREADS = 8;
+
+    private static final int RECORDS = 1000;
+}
@@ -0,0 +1,184 @@
+package org.nines;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.function.BiFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GitFetchTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private org.eclipse.jgit.api.Git upstream;
+
+    private final Arc.GitLabProject gitLabProject = new Arc.GitLabProject(
+        "arc/upstream", "upstream"
+    );
+
+    @Before
+    public void createUpstream() throws Exception {
+        upstream = org.eclipse.jgit.api.Git.init()
+            .setDirectory(folder.newFolder("upstream"))
+            .setInitialBranch("master")
+            .call();
+        commitUpstream("first");
+    }
+
+    @After
+    public void closeUpstream() {
+        upstream.close();
+    }
+
+    @Test
+    public void inProcessFetchMovesCheckedOutMaster() throws Exception {
+        assertMasterMoves(false, InProcessGit::new);
+    }
+
+    @Test
+    public void inProcessFetchMovesBareMaster() throws Exception {
+        assertMasterMoves(true, InProcessGit::new);
+    }
+
+    @Test
+    public void commandLineFetchMovesCheckedOutMaster() throws Exception {
+        assertMasterMoves(false, CommandLineGit::new);
+    }
+
+    @Test
+    public void commandLineFetchMovesBareMaster() throws Exception {
+        assertMasterMoves(true, CommandLineGit::new);
+    }
+
+    @Test
+    public void inProcessFetchKeepsUnpushedCommits() throws Exception {
+        assertUnpushedCommitsKept(false, InProcessGit::new);
+    }
+
+    @Test
+    public void inProcessFetchKeepsUnpushedBareCommits() throws Exception {
+        assertUnpushedCommitsKept(true, InProcessGit::new);
+    }
+
+    @Test
+    public void commandLineFetchKeepsUnpushedCommits() throws Exception {
+        assertUnpushedCommitsKept(false, CommandLineGit::new);
+    }
+
+    @Test
+    public void commandLineFetchKeepsUnpushedBareCommits() throws Exception {
+        assertUnpushedCommitsKept(true, CommandLineGit::new);
+    }
+
+    @Test
+    public void inProcessPushFailsWhenRejected() throws Exception {
+        final File clone = clone(upstream.getRepository().getDirectory(), "pushing", false);
+        commit(clone, "local", false);
+        commitUpstream("diverged");
+
+        System.setProperty("arc.git.transport", "jgit");
+        try {
+            new InProcessGit(gitLabProject, clone).push();
+            fail("rejected push succeeded");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("REJECTED_NONFASTFORWARD"));
+        } finally {
+            System.clearProperty("arc.git.transport");
+        }
+    }
+
+    private void assertMasterMoves(boolean bare,
+                                   BiFunction<Arc.GitLabProject, File, Git> backend)
+        throws Exception {
+        final File clone = clone(upstream.getRepository().getDirectory(), "clone", bare);
+        final RevCommit second = commitUpstream("second");
+
+        backend.apply(gitLabProject, clone).fetch("master");
+
+        try (org.eclipse.jgit.api.Git git = org.eclipse.jgit.api.Git.open(clone)) {
+            final Repository repository = git.getRepository();
+            assertEquals(second.getId(), repository.resolve(Constants.R_HEADS + "master"));
+            if (!bare) {
+                assertEquals("master", repository.getBranch());
+                assertEquals("second", new String(
+                    Files.readAllBytes(new File(clone, "record.rdf").toPath()),
+                    StandardCharsets.UTF_8
+                ));
+            }
+        }
+    }
+
+    private void assertUnpushedCommitsKept(boolean bare,
+                                           BiFunction<Arc.GitLabProject, File, Git> backend)
+        throws Exception {
+        final File clone = clone(upstream.getRepository().getDirectory(), "migrated", bare);
+        final RevCommit migrated = commit(
+            bare ? clone(clone, "scratch", false) : clone, "migrated", bare
+        );
+        commitUpstream("updated");
+
+        try {
+            backend.apply(gitLabProject, clone).fetch("master");
+            fail("fetch reset unpushed commits of " + clone);
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("push or remove them"));
+        }
+
+        try (org.eclipse.jgit.api.Git git = org.eclipse.jgit.api.Git.open(clone)) {
+            assertEquals(
+                migrated.getId(), git.getRepository().resolve(Constants.R_HEADS + "master")
+            );
+        }
+    }
+
+    private File clone(File origin, String name, boolean bare) throws Exception {
+        final File clone = new File(folder.getRoot(), bare ? name + ".git" : name);
+        org.eclipse.jgit.api.Git.cloneRepository()
+            .setURI(origin.toURI().toString())
+            .setDirectory(clone)
+            .setBare(bare)
+            .call()
+            .close();
+        return clone;
+    }
+
+    /**
+     * Commits in a working tree, pushing the commit to its origin if requested.
+     */
+    private static RevCommit commit(File workTree, String contents, boolean push)
+        throws Exception {
+        try (org.eclipse.jgit.api.Git git = org.eclipse.jgit.api.Git.open(workTree)) {
+            Files.write(
+                new File(workTree, "record.rdf").toPath(), contents.getBytes(StandardCharsets.UTF_8)
+            );
+            git.add().addFilepattern("record.rdf").call();
+            final RevCommit commit = git.commit().setMessage(contents).call();
+            if (push) {
+                git.push().setRemote("origin").call();
+            }
+            return commit;
+        }
+    }
+
+    private RevCommit commitUpstream(String contents) throws Exception {
+        final File workTree = upstream.getRepository().getWorkTree();
+        Files.write(
+            new File(workTree, "record.rdf").toPath(), contents.getBytes(StandardCharsets.UTF_8)
+        );
+        upstream.add().addFilepattern("record.rdf").call();
+        return upstream.commit().setMessage(contents).call();
+    }
+}
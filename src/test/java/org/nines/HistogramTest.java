@@ -0,0 +1,72 @@
+package org.nines;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void bucketsSmallValuesExactly() {
+        for (long value = 0; value < 32; value++) {
+            assertEquals(value, Histogram.index(value));
+            assertEquals(value, Histogram.lowest(Histogram.index(value)));
+        }
+    }
+
+    @Test
+    public void bucketsContainTheirValues() {
+        final LongStream boundaries = LongStream.range(5, 62)
+            .flatMap(bit -> LongStream.of((1L << bit) - 1, 1L << bit, (1L << bit) + 1));
+        final LongStream random = new Random(0).longs(10000, 0, Long.MAX_VALUE / 2);
+        LongStream.concat(boundaries, random).forEach(value -> {
+            final int index = Histogram.index(value);
+            assertTrue(value + " below its bucket", Histogram.lowest(index) <= value);
+            assertTrue(value + " above its bucket", value < Histogram.lowest(index + 1));
+            assertTrue(value + " in a wide bucket",
+                Histogram.lowest(index + 1) - Histogram.lowest(index) <= Math.max(1, value / 32));
+        });
+        assertTrue(Histogram.index(Long.MAX_VALUE) < (64 - 5 + 1) * 32);
+    }
+
+    @Test
+    public void estimatesQuantilesWithinTwoPercent() {
+        final Histogram histogram = new Histogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value);
+        }
+        for (double quantile : new double[] { 0.01, 0.5, 0.9, 0.99, 0.999 }) {
+            final double expected = quantile * 100000;
+            final long estimate = histogram.quantile(quantile);
+            assertTrue(quantile + ": " + estimate,
+                Math.abs(estimate - expected) <= expected * 0.02);
+        }
+        assertEquals(1, histogram.quantile(0));
+        assertTrue(histogram.quantile(1) >= 98000 && histogram.quantile(1) <= 100000);
+        assertEquals(100000L * 100001 / 2, histogram.sum());
+    }
+
+    @Test
+    public void boundsQuantilesByMinimumAndMaximum() {
+        final Histogram empty = new Histogram();
+        assertEquals(0, empty.quantile(0.5));
+
+        // 1024 and 1055 share a bucket whose midpoint is 1039
+        final Histogram low = new Histogram();
+        low.record(1024);
+        assertEquals(1024, low.quantile(0.5));
+
+        final Histogram high = new Histogram();
+        high.record(1055);
+        assertEquals(1055, high.quantile(0.5));
+
+        final Histogram negative = new Histogram();
+        negative.record(-5);
+        assertEquals(0, negative.min());
+        assertEquals(0, negative.quantile(0.5));
+    }
+}
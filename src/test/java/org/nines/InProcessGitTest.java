@@ -0,0 +1,74 @@
+package org.nines;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InProcessGitTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void rewritesExecutableFilesKeepingTheirMode() throws Exception {
+        final File directory = folder.newFolder("project");
+        try (org.eclipse.jgit.api.Git git = org.eclipse.jgit.api.Git.init()
+            .setDirectory(directory)
+            .setInitialBranch("master")
+            .call()) {
+            write(new File(directory, "regular.rdf"), "regular");
+            final File executable = new File(directory, "executable.rdf");
+            write(executable, "executable");
+            assertTrue(executable.setExecutable(true));
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("first").call();
+
+            final InProcessGit inProcessGit = new InProcessGit(
+                new Arc.GitLabProject("arc/project", "project"), directory
+            );
+            assertTrue(inProcessGit.rewrite(
+                "master",
+                path -> path.endsWith(".rdf"),
+                (path, content) -> new String(content, StandardCharsets.UTF_8)
+                    .toUpperCase()
+                    .getBytes(StandardCharsets.UTF_8),
+                "rewrite"
+            ));
+
+            final Repository repo = git.getRepository();
+            try (RevWalk revWalk = new RevWalk(repo); TreeWalk treeWalk = new TreeWalk(repo)) {
+                treeWalk.addTree(revWalk.parseCommit(
+                    repo.resolve(Constants.R_HEADS + "master")
+                ).getTree());
+                assertTrue(treeWalk.next());
+                assertEquals("executable.rdf", treeWalk.getPathString());
+                assertEquals(FileMode.EXECUTABLE_FILE, treeWalk.getFileMode(0));
+                assertEquals("EXECUTABLE", read(repo, treeWalk));
+                assertTrue(treeWalk.next());
+                assertEquals("regular.rdf", treeWalk.getPathString());
+                assertEquals(FileMode.REGULAR_FILE, treeWalk.getFileMode(0));
+                assertEquals("REGULAR", read(repo, treeWalk));
+            }
+        }
+    }
+
+    private static void write(File file, String contents) throws Exception {
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(Repository repo, TreeWalk treeWalk) throws Exception {
+        return new String(repo.open(treeWalk.getObjectId(0)).getBytes(), StandardCharsets.UTF_8);
+    }
+}
@@ -3,9 +3,11 @@ package org.nines;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.vocabulary.DC;
-import org.apache.jena.vocabulary.RDF;
+import org.xml.sax.SAXException;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -30,10 +32,13 @@ public class RdfSchemaValidatingIT extends RdfValidatingIT {
     @Override
     protected Stream<String[]> csvReport(Workspace workspace, RdfProject rdfProject, File rdfFile) {
         final List<String[]> errors = new ArrayList<>();
-        RdfXmlDocument.model(rdfFile).listSubjects().filterDrop(RDFNode::isAnon).forEachRemaining(subject -> {
-            for (Schema.Error error : Schema.validate(rdfProject, subject)) {
+        final StreamingSchemaValidator validator = new StreamingSchemaValidator(
+            SchemaValidator.forProject(rdfProject)
+        );
+        try {
+            validator.validate(rdfFile, SchemaValidator.Errors.collecting(error -> {
                 if (error.value == null || error.property == null || !ERROR_FOCUS.contains(error.property)) {
-                    continue;
+                    return;
                 }
 
                 errors.add(new String[] {
@@ -45,9 +50,12 @@ public class RdfSchemaValidatingIT extends RdfValidatingIT {
                     gitLabUrl(rdfProject, rdfFile, "master", -1)
 
                 });
-
-            }
-        });
+            }));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (SAXException e) {
+            throw new RuntimeException(e);
+        }
         return errors.stream();
     }
 
@@ -1,7 +1,6 @@
 package org.nines;
 
 import au.com.bytecode.opencsv.CSVWriter;
-import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
@@ -9,43 +8,43 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public abstract class RdfValidatingIT extends LoggingIT {
 
-    private final AtomicLong fileCounter = new AtomicLong();
-
     @Test
+    @SuppressWarnings("try")
     public void report() throws IOException {
-        final Workspace workspace = new Workspace(new Arc());
-
-        final Stream<String[]> parseErrors = workspace.projects()
-            .filter(rdfProject -> projectFilter(rdfProject.git.gitLabProject))
-            .parallel()
-            .flatMap(rdfProject -> rdfProject.rdfFiles().parallel().flatMap(rdfFile -> {
-                progress(rdfFile);
-                return csvReport(workspace, rdfProject, rdfFile);
-            }))
-            .limit(csvErrorLimit());
-
-        try (CSVWriter csv = new CSVWriter(Files.newBufferedWriter(csvPath(), StandardCharsets.UTF_8))) {
-            Stream.concat(Stream.<String[]>of(csvReportHeader()), parseErrors).sequential().forEach(csv::writeNext);
-        }
-    }
-
-    @Before
-    public void resetProgress() {
-        fileCounter.set(0);
-    }
-    private void progress(File file) {
-        final long count = fileCounter.incrementAndGet();
-        if (count % 1000L == 0L) {
-            logger.fine(() -> String.format("[%08d] %s", count, file));
+        final Arc arc = new Arc();
+        final Workspace workspace = new Workspace(arc);
+
+        try (Progress progress = Progress.configured(getClass().getSimpleName(), () -> 0L)) {
+            final Arc.GitLabProject[] gitLabProjects = arc.rdfRepositories();
+            progress.expectProjects(gitLabProjects.length);
+            final Stream<String[]> parseErrors = workspace.projects(gitLabProjects)
+                .filter(progress.skipping(rdfProject -> projectFilter(rdfProject.git.gitLabProject)))
+                .parallel()
+                .flatMap(rdfProject -> {
+                    final String project = rdfProject.git.gitLabProject.name;
+                    final List<File> rdfFiles = rdfProject.rdfFiles().collect(Collectors.toList());
+                    progress.inventory(project, rdfFiles);
+                    return rdfFiles.parallelStream().flatMap(rdfFile -> {
+                        progress.processed(project, rdfFile.length());
+                        try (Admission.Permit permit = Admission.admit(rdfFile.length())) {
+                            return csvReport(workspace, rdfProject, rdfFile).collect(Collectors.toList()).stream();
+                        }
+                    });
+                })
+                .limit(csvErrorLimit());
+
+            try (CSVWriter csv = new CSVWriter(Files.newBufferedWriter(csvPath(), StandardCharsets.UTF_8))) {
+                Stream.concat(Stream.<String[]>of(csvReportHeader()), parseErrors).sequential().forEach(csv::writeNext);
+            }
         }
     }
 
-
     protected boolean projectFilter(Arc.GitLabProject project) {
         return true;
     }
@@ -0,0 +1,130 @@
+package org.nines;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResIterator;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingSchemaValidatorTest {
+
+    @Test
+    public void ignoresRepeatedStatements() throws Exception {
+        final String rdf = rdf(
+            record("a", complete("Title") + "<dc:title>Title</dc:title>"
+                + "<collex:genre>Nonsense</collex:genre><collex:genre>Nonsense</collex:genre>"
+                + "<role:ZZZ>Someone</role:ZZZ><role:ZZZ>Someone</role:ZZZ>")
+        );
+
+        final List<String> errors = streamingErrors(rdf);
+        assertEquals(modelErrors(rdf), errors);
+        assertEquals(2, errors.size());
+        assertTrue(errors.stream()
+            .noneMatch(e -> e.endsWith(ErrorCode.MORE_THAN_ONE_VALUE.name())));
+    }
+
+    @Test
+    public void mergesRecordsSplitAcrossTheFile() throws Exception {
+        final String rdf = rdf(
+            record("a", "<collex:archive>arc</collex:archive><dc:title>First</dc:title>"),
+            record("b", complete("Complete")),
+            record("c", "<dc:title>Incomplete</dc:title>"),
+            record("a", complete("Second").replace("<collex:archive>arc</collex:archive>", ""))
+        );
+
+        final List<String> errors = streamingErrors(rdf);
+        assertEquals(modelErrors(rdf), errors);
+        assertTrue(errors.contains(String.join(" | ",
+            subject("a"), DC_TITLE, "", ErrorCode.MORE_THAN_ONE_VALUE.name()
+        )));
+        assertTrue(errors.stream().noneMatch(e -> e.startsWith(subject("a"))
+            && e.endsWith(ErrorCode.PROPERTY_REQUIRED.name())));
+    }
+
+    private static List<String> streamingErrors(String rdf) throws Exception {
+        final List<String> errors = new ArrayList<>();
+        new StreamingSchemaValidator(SchemaValidator.CATALOG).validate(
+            new ByteArrayInputStream(rdf.getBytes(StandardCharsets.UTF_8)), BASE, null,
+            collecting(errors)
+        );
+        Collections.sort(errors);
+        return errors;
+    }
+
+    private static List<String> modelErrors(String rdf) {
+        final Model model = ModelFactory.createDefaultModel().read(
+            new ByteArrayInputStream(rdf.getBytes(StandardCharsets.UTF_8)), BASE
+        );
+        final List<String> errors = new ArrayList<>();
+        for (ResIterator it = model.listSubjects(); it.hasNext(); ) {
+            final Resource subject = it.nextResource();
+            if (subject.isURIResource()) {
+                SchemaValidator.CATALOG.validate(subject, collecting(errors));
+            }
+        }
+        Collections.sort(errors);
+        return errors;
+    }
+
+    private static SchemaValidator.Errors collecting(List<String> errors) {
+        return (subject, property, value, code) -> errors.add(String.join(" | ",
+            subject.getURI(),
+            Optional.ofNullable(property).map(Property::getURI).orElse(""),
+            Optional.ofNullable(value).map(RDFNode::toString).orElse(""),
+            code.name()
+        ));
+    }
+
+    private static String complete(String title) {
+        return "<collex:archive>arc</collex:archive>"
+            + "<dc:title>" + title + "</dc:title>"
+            + "<dc:date>1850</dc:date>"
+            + "<dc:type>Codex</dc:type>"
+            + "<rdfs:seeAlso rdf:resource=\"http://example.org/see\"/>"
+            + "<collex:genre>Poetry</collex:genre>"
+            + "<collex:discipline>Literature</collex:discipline>"
+            + "<collex:freeculture>true</collex:freeculture>"
+            + "<collex:fulltext>false</collex:fulltext>"
+            + "<collex:ocr>false</collex:ocr>"
+            + "<collex:federation>NINES</collex:federation>"
+            + "<role:AUT>Someone</role:AUT>";
+    }
+
+    private static String record(String name, String properties) {
+        return String.format(
+            "<nines:Record rdf:about=\"%s\">%s</nines:Record>", subject(name), properties
+        );
+    }
+
+    private static String rdf(String... records) {
+        return "<rdf:RDF"
+            + " xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\""
+            + " xmlns:rdfs=\"http://www.w3.org/2000/01/rdf-schema#\""
+            + " xmlns:dc=\"http://purl.org/dc/elements/1.1/\""
+            + " xmlns:collex=\"http://www.collex.org/schema#\""
+            + " xmlns:role=\"http://www.loc.gov/loc.terms/relators/\""
+            + " xmlns:nines=\"http://www.nines.org/schema#\">"
+            + String.join("", records)
+            + "</rdf:RDF>";
+    }
+
+    private static String subject(String name) {
+        return "http://example.org/" + name;
+    }
+
+    private static final String BASE = "http://example.org/records.rdf";
+
+    private static final String DC_TITLE = "http://purl.org/dc/elements/1.1/title";
+}
@@ -0,0 +1,128 @@
+package org.nines;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+public class ValidationCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Workspace workspace;
+    private File rdfFile;
+    private final AtomicInteger validations = new AtomicInteger();
+
+    @Before
+    public void createWorkspace() throws Exception {
+        workspace = new Workspace(null, folder.getRoot());
+        rdfFile = folder.newFile("records.rdf");
+        Files.write(rdfFile.toPath(), "<rdf:RDF/>".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void reportsCachedFindingsAcrossRuns() throws Exception {
+        final BiConsumer<File, Validation.Findings> validation = (f, findings) -> {
+            validations.incrementAndGet();
+            findings.schemaError("http://example.org/a", "", "", ErrorCode.ROLE_REQUIRED);
+            findings.parseError("xml", 3, 14, "Element type must be followed by attributes");
+            findings.schemaError("http://example.org/a", "http://www.collex.org/schema#genre",
+                "Nonsense", ErrorCode.GENRE_NOT_APPROVED);
+        };
+
+        final List<String> validated;
+        try (ValidationCache cache = open()) {
+            validated = validate(cache, validation);
+        }
+        final List<String> cached;
+        try (ValidationCache cache = open()) {
+            cached = validate(cache, validation);
+            assertEquals(1, cache.hits());
+        }
+
+        assertEquals(1, validations.get());
+        assertEquals(3, validated.size());
+        assertEquals(validated, cached);
+    }
+
+    @Test
+    public void validatesAgainAfterReadErrors() throws Exception {
+        final BiConsumer<File, Validation.Findings> validation = (f, findings) -> {
+            validations.incrementAndGet();
+            findings.ioError("java.io.IOException: Input/output error");
+        };
+
+        try (ValidationCache cache = open()) {
+            validate(cache, validation);
+            assertEquals(Collections.singletonList("io | java.io.IOException: Input/output error"),
+                validate(cache, validation));
+        }
+        assertEquals(2, validations.get());
+    }
+
+    @Test
+    public void rebuildsUnreadableCache() throws Exception {
+        final BiConsumer<File, Validation.Findings> validation = (f, findings) -> {
+            validations.incrementAndGet();
+            findings.schemaError("http://example.org/a", "", "", ErrorCode.ROLE_REQUIRED);
+        };
+        try (ValidationCache cache = open()) {
+            validate(cache, validation);
+        }
+        final Path cacheFile;
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            cacheFile = files.filter(p -> p.getFileName().toString().startsWith(".arc-"))
+                .findFirst().orElseThrow(IllegalStateException::new);
+        }
+        final byte[] corrupt = Files.readAllBytes(cacheFile);
+        Files.write(cacheFile, Arrays.copyOf(corrupt, corrupt.length / 2));
+
+        try (ValidationCache cache = open()) {
+            assertEquals(1, validate(cache, validation).size());
+            assertEquals(0, cache.hits());
+        }
+        assertEquals(2, validations.get());
+    }
+
+    private ValidationCache open() {
+        return ValidationCache.open(workspace, "test", "1");
+    }
+
+    private List<String> validate(ValidationCache cache,
+                                  BiConsumer<File, Validation.Findings> validation) {
+        final List<String> found = new ArrayList<>();
+        cache.validate(rdfFile, validation, new Validation.Findings() {
+            @Override
+            public void schemaError(String subject, String property, String value,
+                                    ErrorCode code) {
+                found.add(String.join(" | ", subject, property, value, code.name()));
+            }
+
+            @Override
+            public void parseError(String check, int line, int column, String message) {
+                found.add(String.join(" | ", check, line + ":" + column, message));
+            }
+
+            @Override
+            public void ioError(String message) {
+                found.add(String.join(" | ", "io", message));
+            }
+        });
+        return found;
+    }
+}